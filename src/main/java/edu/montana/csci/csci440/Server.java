@@ -2,7 +2,9 @@ package edu.montana.csci.csci440;
 
 import edu.montana.csci.csci440.controller.*;
 import edu.montana.csci.csci440.model.Employee;
+import edu.montana.csci.csci440.model.Suggestion;
 import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.DB;
 import edu.montana.csci.csci440.util.Web;
 
 import java.io.PrintWriter;
@@ -43,6 +45,16 @@ class Server {
         CustomersController.init();
         InvoicesController.init();
 
+        /* ========================================================================= */
+        /* Admin
+        /* ========================================================================= */
+        AdminController.init();
+
+        // open the pooled connections now, which also applies any pending migrations
+        DB.warmUp();
+
+        // load the suggestion indexes now so the first search box request does not wait for them
+        Suggestion.build();
 
     }
 
@@ -0,0 +1,65 @@
+package edu.montana.csci.csci440.controller;
+
+import edu.montana.csci.csci440.util.DB;
+import edu.montana.csci.csci440.util.Metrics;
+import edu.montana.csci.csci440.util.SlowQueries;
+import edu.montana.csci.csci440.util.Templates;
+import edu.montana.csci.csci440.util.Web;
+
+import spark.Request;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static spark.Spark.before;
+import static spark.Spark.get;
+import static spark.Spark.halt;
+
+public class AdminController {
+
+    // these pages show SQL, timings and template internals, so they are only served to the machine the
+    // server runs on unless -Dadmin.allowRemote=true, for a scraper on another host
+    private static final boolean ALLOW_REMOTE = Boolean.getBoolean("admin.allowRemote");
+
+    public static void init() {
+        before("/admin/*", (req, resp) -> checkAccess(req));
+        before("/metrics", (req, resp) -> checkAccess(req));
+
+        get("/admin/templates", (req, resp) -> {
+            return Web.renderTemplate("templates/admin/templates.vm",
+                    "timings", Templates.getTimings().values(),
+                    "devMode", Templates.isDevMode());
+        });
+
+        get("/admin/slow-queries", (req, resp) -> {
+            SlowQueries slowQueries = DB.getSlowQueries();
+            return Web.renderTemplate("templates/admin/slow_queries.vm",
+                    "byTotal", slowQueries.getTopByTotal(20),
+                    "byP99", slowQueries.getTopByP99(20),
+                    "recent", slowQueries.getRecent(),
+                    "slowCount", slowQueries.getSlowCount(),
+                    "thresholdMillis", slowQueries.getThresholdMillis());
+        });
+
+        // scraped by Prometheus
+        get("/metrics", (req, resp) -> {
+            resp.type("text/plain; version=0.0.4; charset=utf-8");
+            return Metrics.prometheus();
+        });
+    }
+
+    private static void checkAccess(Request req) {
+        if (!ALLOW_REMOTE && !isLoopback(req.ip())) {
+            halt(403, "Forbidden");
+        }
+    }
+
+    private static boolean isLoopback(String ip) {
+        try {
+            // an address literal, so there is no lookup
+            return InetAddress.getByName(ip).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package edu.montana.csci.csci440.controller;
 
 import edu.montana.csci.csci440.model.Album;
 import edu.montana.csci.csci440.model.Artist;
+import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.ConditionalGet;
+import edu.montana.csci.csci440.util.PageCache;
 import edu.montana.csci.csci440.util.Web;
 
 import java.util.List;
@@ -35,12 +38,14 @@ public class AlbumsController {
 
 
         /* READ */
+        PageCache.register("/albums", Album.class, Artist.class);
         get("/albums", (req, resp) -> {
-            List<Album> albums = Album.all(Web.getPage(), Web.PAGE_SIZE);
+            List<Album> albums = Album.all(Web.getCursor(), Web.PAGE_SIZE).including("artist");
             return Web.renderTemplate("templates/albums/index.vm",
                     "albums", albums);
         });
 
+        ConditionalGet.register("/albums/:id", Album.class, Artist.class, Track.class);
         get("/albums/:id", (req, resp) -> {
             Album album = Album.find(Integer.parseInt(req.params(":id")));
             return Web.renderTemplate("templates/albums/show.vm",
@@ -1,7 +1,10 @@
 package edu.montana.csci.csci440.controller;
 
+import edu.montana.csci.csci440.model.Album;
 import edu.montana.csci.csci440.model.Artist;
 import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.ConditionalGet;
+import edu.montana.csci.csci440.util.PageCache;
 import edu.montana.csci.csci440.util.Web;
 
 import java.util.List;
@@ -31,12 +34,14 @@ public class ArtistController {
         });
 
         /* READ */
+        PageCache.register("/artists", Artist.class);
         get("/artists", (req, resp) -> {
-            List<Artist> artists = Artist.all(Web.getPage(), Web.PAGE_SIZE);
+            List<Artist> artists = Artist.all(Web.getCursor(), Web.PAGE_SIZE);
             return Web.renderTemplate("templates/artists/index.vm",
                     "artists", artists);
         });
 
+        ConditionalGet.register("/artists/:id", Artist.class, Album.class);
         get("/artists/:id", (req, resp) -> {
             Artist artist = Artist.find(Integer.parseInt(req.params(":id")));
             return Web.renderTemplate("templates/artists/show.vm",
@@ -1,6 +1,7 @@
 package edu.montana.csci.csci440.controller;
 
 import edu.montana.csci.csci440.model.Customer;
+import edu.montana.csci.csci440.util.PageCache;
 import edu.montana.csci.csci440.util.Web;
 
 import java.util.List;
@@ -11,8 +12,9 @@ import static spark.Spark.post;
 public class CustomersController {
     public static void init(){
         /* READ */
+        PageCache.register("/customers", Customer.class);
         get("/customers", (req, resp) -> {
-            List<Customer> customers = Customer.all(Web.getPage(), Web.PAGE_SIZE);
+            List<Customer> customers = Customer.all(Web.getCursor(), Web.PAGE_SIZE);
             return Web.renderTemplate("templates/customers/index.vm",
                     "customers", customers);
         });
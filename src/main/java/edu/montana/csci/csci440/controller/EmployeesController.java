@@ -32,14 +32,14 @@ public class EmployeesController {
 
         /* READ */
         get("/employees", (req, resp) -> {
-            List<Employee> employees = Employee.all(1, Web.PAGE_SIZE);
+            List<Employee> employees = Employee.all(Web.getCursor(), Web.PAGE_SIZE);
             return Web.renderTemplate("templates/employees/index.vm",
                     "employees", employees);
         });
 
         get("/employees/tree", (request, response) -> {
             String employeeTree = EmployeeHelper.makeEmployeeTree();
-            return Web.renderTemplate("templates/employees/tree.vm",
+            return Web.streamTemplate("templates/employees/tree.vm",
                     "employeeTree", employeeTree);
         });
 
@@ -1,6 +1,8 @@
 package edu.montana.csci.csci440.controller;
 
 import edu.montana.csci.csci440.model.Invoice;
+import edu.montana.csci.csci440.model.InvoiceItem;
+import edu.montana.csci.csci440.util.ConditionalGet;
 import edu.montana.csci.csci440.util.Web;
 
 import java.util.List;
@@ -12,15 +14,18 @@ public class InvoicesController {
     public static void init(){
         /* READ */
         get("/invoices", (req, resp) -> {
-            List<Invoice> invoices = Invoice.all(Web.getPage(), Web.PAGE_SIZE);
+            List<Invoice> invoices = Invoice.all(Web.getCursor(), Web.PAGE_SIZE);
             return Web.renderTemplate("templates/invoices/index.vm",
                     "invoices", invoices);
         });
 
+        ConditionalGet.register("/invoices/:id", Invoice.class, InvoiceItem.class);
         get("/invoices/:id", (req, resp) -> {
             Invoice invoice = Invoice.find(Integer.parseInt(req.params(":id")));
+            // the template lists the items and pages them, from one query
+            List<InvoiceItem> items = invoice.getInvoiceItems();
             return Web.renderTemplate("templates/invoices/show.vm",
-                    "invoice", invoice);
+                    "invoice", invoice, "items", items);
         });
     }
 }
@@ -1,6 +1,8 @@
 package edu.montana.csci.csci440.controller;
 
 import edu.montana.csci.csci440.model.Playlist;
+import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.ConditionalGet;
 import edu.montana.csci.csci440.util.Web;
 
 import java.util.List;
@@ -12,11 +14,12 @@ public class PlaylistsController {
     public static void init() {
         /* READ */
         get("/playlists", (req, resp) -> {
-            List<Playlist> playlists = Playlist.all(Web.getPage(), Web.PAGE_SIZE);
+            List<Playlist> playlists = Playlist.all(Web.getCursor(), Web.PAGE_SIZE);
             return Web.renderTemplate("templates/playlists/index.vm",
                     "playlists", playlists);
         });
 
+        ConditionalGet.register("/playlists/:id", Playlist.class, Track.class);
         get("/playlists/:id", (req, resp) -> {
             Playlist playlist = Playlist.find(Integer.parseInt(req.params(":id")));
             return Web.renderTemplate("templates/playlists/show.vm",
@@ -1,7 +1,10 @@
 package edu.montana.csci.csci440.controller;
 
+import edu.montana.csci.csci440.model.Album;
 import edu.montana.csci.csci440.model.Artist;
+import edu.montana.csci.csci440.model.Suggestion;
 import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.PageCache;
 import edu.montana.csci.csci440.util.Web;
 
 import java.util.List;
@@ -31,18 +34,19 @@ public class TracksController {
         });
 
         /* READ */
+        PageCache.register("/tracks", Track.class, Album.class, Artist.class);
         get("/tracks", (req, resp) -> {
             String search = req.queryParams("q");
             String orderBy = req.queryParams("o");
             List<Track> tracks;
             if (search != null) {
-                tracks = Track.search(Web.getPage(), Web.PAGE_SIZE, orderBy, search);
+                tracks = Track.search(Web.getCursor(), Web.PAGE_SIZE, search);
             } else {
-                tracks = Track.all(Web.getPage(), Web.PAGE_SIZE, orderBy);
+                tracks = Track.all(Web.getCursor(), Web.PAGE_SIZE, orderBy);
             }
             // TODO - implement cache of count w/ Redis
             long totalTracks = Track.count();
-            return Web.renderTemplate("templates/tracks/index.vm",
+            return Web.streamTemplate("templates/tracks/index.vm",
                     "tracks", tracks, "totalTracks", totalTracks);
         });
 
@@ -53,12 +57,34 @@ public class TracksController {
                     search,
                     Web.integerOrNull("ArtistId"),
                     Web.integerOrNull("AlbumId"),
+                    Web.integerOrNull("GenreId"),
+                    Web.integerOrNull("MediaTypeId"),
                     Web.integerOrNull("max"),
                     Web.integerOrNull("min"));
-            return Web.renderTemplate("templates/tracks/search.vm",
+            return Web.streamTemplate("templates/tracks/search.vm",
                     "tracks", tracks);
         });
 
+        // search-as-you-type over track, album and artist names, as JSON for the search box
+        get("/tracks/suggest", (req, resp) -> {
+            Integer limit = Web.integerOrNull("limit");
+            List<Suggestion> suggestions = Suggestion.suggest(req.queryParams("q"),
+                    limit == null ? 10 : Math.max(1, Math.min(limit, 50)));
+            resp.type("application/json");
+            StringBuilder json = new StringBuilder("[");
+            for (Suggestion suggestion : suggestions) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append("{\"type\":").append(jsonString(suggestion.getType()))
+                        .append(",\"id\":").append(suggestion.getId())
+                        .append(",\"name\":").append(jsonString(suggestion.getName()))
+                        .append(",\"url\":").append(jsonString(suggestion.getUrl()))
+                        .append('}');
+            }
+            return json.append(']').toString();
+        });
+
         get("/tracks/:id", (req, resp) -> {
             Track track = Track.find(Integer.parseInt(req.params(":id")));
             return Web.renderTemplate("templates/tracks/show.vm",
@@ -93,4 +119,18 @@ public class TracksController {
             return Web.redirect("/tracks");
         });
     }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
 }
@@ -1,5 +1,6 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 import redis.clients.jedis.Jedis;
 
@@ -7,15 +8,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Album extends Model {
 
     Long albumId;
     Long artistId;
     String title;
+    private transient Artist artist;
 
     public Album() {
     }
@@ -40,9 +46,29 @@ public class Album extends Model {
     }
 
     public Artist getArtist() {
+        if (artist != null && artist.getArtistId().equals(artistId)) {
+            return artist;
+        }
         return Artist.find(artistId);
     }
 
+    @Override
+    void preload(String relation, List<? extends Model> albums) {
+        if ("artist".equals(relation)) {
+            Set<Long> artistIds = new HashSet<>();
+            for (Model model : albums) {
+                artistIds.add(((Album) model).artistId);
+            }
+            Map<Long, Artist> artists = Artist.findAll(artistIds);
+            for (Model model : albums) {
+                Album album = (Album) model;
+                album.artist = artists.get(album.artistId);
+            }
+        } else {
+            super.preload(relation, albums);
+        }
+    }
+
     public void setArtist(Artist artist) {
         artistId = artist.getArtistId();
     }
@@ -72,11 +98,11 @@ public class Album extends Model {
         return artistId;
     }
 
-    public static List<Album> all() {
+    public static ModelList<Album> all() {
         return all(0, Integer.MAX_VALUE);
     }
 
-    public static List<Album> all(int page, int count) {
+    public static ModelList<Album> all(int page, int count) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(
                      "SELECT * FROM albums LIMIT ? OFFSET ?"
@@ -84,7 +110,7 @@ public class Album extends Model {
             stmt.setInt(1, count);
             stmt.setInt(2, count*page-count);
             ResultSet results = stmt.executeQuery();
-            List<Album> resultList = new LinkedList<>();
+            ModelList<Album> resultList = new ModelList<>();
             while (results.next()) {
                 resultList.add(new Album(results));
             }
@@ -94,7 +120,24 @@ public class Album extends Model {
         }
     }
 
+    public static CursorList<Album> all(Cursor cursor, int count) {
+        return seek("SELECT * FROM albums", Collections.emptyList(), Collections.emptyList(),
+                new String[]{"AlbumId"}, cursor, count, Album::new);
+    }
+
+    public static Map<Long, Album> findAll(Collection<Long> albumIds) {
+        Map<Long, Album> albums = new HashMap<>();
+        for (Album album : findAllByIds("SELECT * FROM albums WHERE AlbumId", albumIds, Album::new)) {
+            albums.put(album.getAlbumId(), album);
+        }
+        return albums;
+    }
+
     public static Album find(long i) {
+        return findCached(Album.class, i, Album::load);
+    }
+
+    private static Album load(long i) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM albums WHERE AlbumId=?")) {
             stmt.setLong(1, i);
@@ -116,12 +159,14 @@ public class Album extends Model {
 
     public boolean update(){
         if (verify()) {
-            try (Connection conn = DB.connect()){
+            try (Connection conn = DB.connectForWrite()){
                 PreparedStatement stmt = conn.prepareStatement("UPDATE albums SET title = ?, ArtistId = ?  WHERE AlbumId =?;");
                 stmt.setString(1, this.getTitle());
                 stmt.setLong(2, this.getArtistId());
                 stmt.setLong(3, this.getAlbumId());
                 stmt.executeUpdate();
+                forget(Album.class, albumId);
+                Suggestion.indexed(Suggestion.Kind.ALBUM, albumId, title);
 
                 return true;
             }
@@ -136,13 +181,16 @@ public class Album extends Model {
     @Override
     public boolean create() {
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                  PreparedStatement stmt = conn.prepareStatement(
                          "INSERT INTO albums (Title, ArtistId) VALUES (?, ?)")) {
                 stmt.setString(1, this.getTitle());
                 stmt.setLong(2, this.getArtistId());
                 stmt.executeUpdate();
                 albumId = DB.getLastID(conn);
+                // sqlite can reuse the id of a deleted row
+                forget(Album.class, albumId);
+                Suggestion.indexed(Suggestion.Kind.ALBUM, albumId, title);
                 return true;
             } catch (SQLException sqlException) {
                 throw new RuntimeException(sqlException);
@@ -154,11 +202,13 @@ public class Album extends Model {
 
     @Override
     public void delete() {
-        try (Connection conn = DB.connect();
+        try (Connection conn = DB.connectForWrite();
              PreparedStatement stmt = conn.prepareStatement(
                      "DELETE FROM albums WHERE albumID=?")) {
             stmt.setLong(1, this.getAlbumId());
             stmt.executeUpdate();
+            forget(Album.class, albumId);
+            Suggestion.indexed(Suggestion.Kind.ALBUM, albumId, null);
         } catch (SQLException sqlException) {
             throw new RuntimeException(sqlException);
         }
@@ -1,5 +1,6 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 
 import java.sql.Connection;
@@ -8,8 +9,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class Artist extends Model {
 
@@ -80,7 +83,24 @@ public class Artist extends Model {
         }
     }
 
+    public static CursorList<Artist> all(Cursor cursor, int count) {
+        return seek("SELECT * FROM artists", Collections.emptyList(), Collections.emptyList(),
+                new String[]{"ArtistId"}, cursor, count, Artist::new);
+    }
+
+    public static Map<Long, Artist> findAll(Collection<Long> artistIds) {
+        Map<Long, Artist> artists = new HashMap<>();
+        for (Artist artist : findAllByIds("SELECT * FROM artists WHERE ArtistId", artistIds, Artist::new)) {
+            artists.put(artist.getArtistId(), artist);
+        }
+        return artists;
+    }
+
     public static Artist find(long i) {
+        return findCached(Artist.class, i, Artist::load);
+    }
+
+    private static Artist load(long i) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM artists WHERE ArtistId=?")) {
             stmt.setLong(1, i);
@@ -98,15 +118,17 @@ public class Artist extends Model {
     @Override
     public boolean update() {
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                 PreparedStatement stmt = conn.prepareStatement(
                         "UPDATE artists SET Name = ? WHERE Name=? AND ArtistId=?")){
                     stmt.setString(1,this.getName());
                     stmt.setString(2,this.prevName);
                     stmt.setLong(3,this.getArtistId());
                     int updatedCount = stmt.executeUpdate();
+                    forget(Artist.class, artistId);
 
                     if(updatedCount >= 1) {
+                        Suggestion.indexed(Suggestion.Kind.ARTIST, artistId, name);
                         return true;
                     }
                     else {
@@ -124,12 +146,15 @@ public class Artist extends Model {
     @Override
     public boolean create() {
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                  PreparedStatement stmt = conn.prepareStatement(
                          "INSERT INTO artists (Name) VALUES (?)")) {
                 stmt.setString(1, this.getName());
                 stmt.executeUpdate();
                 artistId = DB.getLastID(conn);
+                // sqlite can reuse the id of a deleted row
+                forget(Artist.class, artistId);
+                Suggestion.indexed(Suggestion.Kind.ARTIST, artistId, name);
                 return true;
             } catch (SQLException sqlException) {
                 throw new RuntimeException(sqlException);
@@ -141,11 +166,13 @@ public class Artist extends Model {
 
     @Override
     public void delete() {
-        try (Connection conn = DB.connect();
+        try (Connection conn = DB.connectForWrite();
              PreparedStatement stmt = conn.prepareStatement(
                      "DELETE FROM artists WHERE artistId=?")) {
             stmt.setLong(1, this.getArtistId());
             stmt.executeUpdate();
+            forget(Artist.class, artistId);
+            Suggestion.indexed(Suggestion.Kind.ARTIST, artistId, null);
         } catch (SQLException sqlException) {
             throw new RuntimeException(sqlException);
         }
@@ -0,0 +1,31 @@
+package edu.montana.csci.csci440.model;
+
+import edu.montana.csci.csci440.util.Cursor;
+
+// a keyset page of models, with the cursors for the pages before and after it, see Model.seek
+public class CursorList<T extends Model> extends ModelList<T> implements Cursor.Paged {
+
+    private Cursor previousCursor;
+    private Cursor nextCursor;
+
+    @Override
+    public Cursor getPreviousCursor() {
+        return previousCursor;
+    }
+
+    @Override
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    void setCursors(Cursor previousCursor, Cursor nextCursor) {
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public CursorList<T> including(String... relations) {
+        super.including(relations);
+        return this;
+    }
+}
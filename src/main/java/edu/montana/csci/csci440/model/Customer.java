@@ -1,14 +1,19 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Customer extends Model {
 
@@ -17,9 +22,30 @@ public class Customer extends Model {
     private String firstName;
     private String lastName;
     private String email;
+    private transient Employee supportRep;
 
     public Employee getSupportRep() {
-         return Employee.find(supportRepId);
+        if (supportRep != null && supportRep.getEmployeeId().equals(supportRepId)) {
+            return supportRep;
+        }
+        return Employee.find(supportRepId);
+    }
+
+    @Override
+    void preload(String relation, List<? extends Model> customers) {
+        if ("supportRep".equals(relation)) {
+            Set<Long> supportRepIds = new HashSet<>();
+            for (Model model : customers) {
+                supportRepIds.add(((Customer) model).supportRepId);
+            }
+            Map<Long, Employee> supportReps = Employee.findAll(supportRepIds);
+            for (Model model : customers) {
+                Customer customer = (Customer) model;
+                customer.supportRep = supportReps.get(customer.supportRepId);
+            }
+        } else {
+            super.preload(relation, customers);
+        }
     }
 
     public List<Invoice> getInvoices(){
@@ -54,11 +80,11 @@ public class Customer extends Model {
         return supportRepId;
     }
 
-    public static List<Customer> all() {
+    public static ModelList<Customer> all() {
         return all(0, Integer.MAX_VALUE);
     }
 
-    public static List<Customer> all(int page, int count) {
+    public static ModelList<Customer> all(int page, int count) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(
                      "SELECT * FROM customers LIMIT ? OFFSET ?"
@@ -66,7 +92,7 @@ public class Customer extends Model {
             stmt.setInt(1, count);
             stmt.setInt(2, count*page-count);
             ResultSet results = stmt.executeQuery();
-            List<Customer> resultList = new LinkedList<>();
+            ModelList<Customer> resultList = new ModelList<>();
             while (results.next()) {
                 resultList.add(new Customer(results));
             }
@@ -76,7 +102,24 @@ public class Customer extends Model {
         }
     }
 
+    public static CursorList<Customer> all(Cursor cursor, int count) {
+        return seek("SELECT * FROM customers", Collections.emptyList(), Collections.emptyList(),
+                new String[]{"CustomerId"}, cursor, count, Customer::new);
+    }
+
+    public static Map<Long, Customer> findAll(Collection<Long> customerIds) {
+        Map<Long, Customer> customers = new HashMap<>();
+        for (Customer customer : findAllByIds("SELECT * FROM customers WHERE CustomerId", customerIds, Customer::new)) {
+            customers.put(customer.getCustomerId(), customer);
+        }
+        return customers;
+    }
+
     public static Customer find(long customerId) {
+        return findCached(Customer.class, customerId, Customer::load);
+    }
+
+    private static Customer load(long customerId) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM customers WHERE CustomerId=?")) {
             stmt.setLong(1, customerId);
@@ -91,13 +134,13 @@ public class Customer extends Model {
         }
     }
 
-    public static List<Customer> forEmployee(long employeeId) {
+    public static ModelList<Customer> forEmployee(long employeeId) {
         String query = "SELECT * FROM customers WHERE SupportRepId=?";
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setLong(1, employeeId);
             ResultSet results = stmt.executeQuery();
-            List<Customer> resultList = new LinkedList<>();
+            ModelList<Customer> resultList = new ModelList<>();
             while (results.next()) {
                 resultList.add(new Customer(results));
             }
@@ -1,13 +1,19 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 import org.javalite.activejdbc.validation.EmailValidator;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,6 +25,7 @@ public class Employee extends Model {
     private String lastName;
     private String email;
     private String title;
+    private transient Employee boss;
     public static final Pattern VALID_EMAIL_ADDRESS_REGEX =
             Pattern.compile("^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", Pattern.CASE_INSENSITIVE);
 
@@ -85,7 +92,7 @@ public class Employee extends Model {
     @Override
     public boolean update() {
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                  PreparedStatement stmt = conn.prepareStatement(
                          "UPDATE employees SET FirstName=?, LastName=?, Email=? WHERE EmployeeId=?")) {
                 stmt.setString(1, this.getFirstName());
@@ -93,6 +100,7 @@ public class Employee extends Model {
                 stmt.setString(3, this.getEmail());
                 stmt.setLong(4, this.getEmployeeId());
                 stmt.executeUpdate();
+                forget(Employee.class, employeeId);
                 return true;
             } catch (SQLException sqlException) {
                 throw new RuntimeException(sqlException);
@@ -105,7 +113,7 @@ public class Employee extends Model {
     @Override
     public boolean create() {
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                  PreparedStatement stmt = conn.prepareStatement(
                          "INSERT INTO employees (FirstName, LastName, Email, ReportsTo) VALUES (?, ?, ?, ?)")) {
                 stmt.setString(1, this.getFirstName());
@@ -114,6 +122,8 @@ public class Employee extends Model {
                 stmt.setLong(4, this.getReportsTo());
                 stmt.executeUpdate();
                 employeeId = DB.getLastID(conn);
+                // sqlite can reuse the id of a deleted row
+                forget(Employee.class, employeeId);
                 return true;
             } catch (SQLException sqlException) {
                 throw new RuntimeException(sqlException);
@@ -125,11 +135,12 @@ public class Employee extends Model {
 
     @Override
     public void delete() {
-        try (Connection conn = DB.connect();
+        try (Connection conn = DB.connectForWrite();
              PreparedStatement stmt = conn.prepareStatement(
                      "DELETE FROM employees WHERE EmployeeID=?")) {
             stmt.setLong(1, this.getEmployeeId());
             stmt.executeUpdate();
+            forget(Employee.class, employeeId);
         } catch (SQLException sqlException) {
             throw new RuntimeException(sqlException);
         }
@@ -169,14 +180,14 @@ public class Employee extends Model {
         this.reportsTo = reportsTo;
     }
 
-    public List<Employee> getReports() {
+    public ModelList<Employee> getReports() {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(
                      "SELECT * FROM employees WHERE ReportsTo=?"
              )) {
             stmt.setLong(1, this.getEmployeeId());
             ResultSet results = stmt.executeQuery();
-            List<Employee> resultList = new LinkedList<>();
+            ModelList<Employee> resultList = new ModelList<>();
             while (results.next()) {
                 resultList.add(new Employee(results));
             }
@@ -186,6 +197,9 @@ public class Employee extends Model {
         }
     }
     public Employee getBoss() {
+        if (boss != null && boss.getEmployeeId().equals(reportsTo)) {
+            return boss;
+        }
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM employees WHERE EmployeeId=?")) {
             stmt.setLong(1, this.getReportsTo());
@@ -200,11 +214,28 @@ public class Employee extends Model {
         }
     }
 
-    public static List<Employee> all() {
+    @Override
+    void preload(String relation, List<? extends Model> employees) {
+        if ("boss".equals(relation)) {
+            Set<Long> bossIds = new HashSet<>();
+            for (Model model : employees) {
+                bossIds.add(((Employee) model).reportsTo);
+            }
+            Map<Long, Employee> bosses = findAll(bossIds);
+            for (Model model : employees) {
+                Employee employee = (Employee) model;
+                employee.boss = bosses.get(employee.reportsTo);
+            }
+        } else {
+            super.preload(relation, employees);
+        }
+    }
+
+    public static ModelList<Employee> all() {
         return all(0, Integer.MAX_VALUE);
     }
 
-    public static List<Employee> all(int page, int count) {
+    public static ModelList<Employee> all(int page, int count) {
         try (Connection conn = DB.connect();
 
              PreparedStatement stmt = conn.prepareStatement(
@@ -213,7 +244,7 @@ public class Employee extends Model {
             stmt.setInt(1, count);
             stmt.setInt(2, page*count-count);
             ResultSet results = stmt.executeQuery();
-            List<Employee> resultList = new LinkedList<>();
+            ModelList<Employee> resultList = new ModelList<>();
             while (results.next()) {
                 resultList.add(new Employee(results));
             }
@@ -223,6 +254,11 @@ public class Employee extends Model {
         }
     }
 
+    public static CursorList<Employee> all(Cursor cursor, int count) {
+        return seek("SELECT * FROM employees", Collections.emptyList(), Collections.emptyList(),
+                new String[]{"EmployeeId"}, cursor, count, Employee::new);
+    }
+
     public static Employee findByEmail(String newEmailAddress) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM employees WHERE Email = ?")) {
@@ -238,7 +274,19 @@ public class Employee extends Model {
         }
     }
 
+    public static Map<Long, Employee> findAll(Collection<Long> employeeIds) {
+        Map<Long, Employee> employees = new HashMap<>();
+        for (Employee employee : findAllByIds("SELECT * FROM employees WHERE EmployeeId", employeeIds, Employee::new)) {
+            employees.put(employee.getEmployeeId(), employee);
+        }
+        return employees;
+    }
+
     public static Employee find(long employeeId) {
+        return findCached(Employee.class, employeeId, Employee::load);
+    }
+
+    private static Employee load(long employeeId) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM employees WHERE EmployeeId=?")) {
             stmt.setLong(1, employeeId);
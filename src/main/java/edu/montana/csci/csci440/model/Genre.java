@@ -47,5 +47,22 @@ public class Genre extends Model {
         }
     }
 
+    public static Genre find(long i) {
+        return findCached(Genre.class, i, Genre::load);
+    }
 
+    private static Genre load(long i) {
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM genres WHERE GenreId=?")) {
+            stmt.setLong(1, i);
+            ResultSet results = stmt.executeQuery();
+            if (results.next()) {
+                return new Genre(results);
+            } else {
+                return null;
+            }
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+    }
 }
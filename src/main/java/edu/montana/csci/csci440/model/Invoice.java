@@ -1,23 +1,30 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Invoice extends Model {
 
     Long invoiceId;
+    Long customerId;
     String billingAddress;
     String billingCity;
     String billingState;
     String billingCountry;
     String billingPostalCode;
     BigDecimal total;
+    private transient Customer customer;
 
     public Invoice() {
         // new employee for insert
@@ -31,14 +38,39 @@ public class Invoice extends Model {
         billingPostalCode = results.getString("BillingPostalCode");
         total = results.getBigDecimal("Total");
         invoiceId = results.getLong("InvoiceId");
+        customerId = results.getLong("CustomerId");
     }
 
-    public List<InvoiceItem> getInvoiceItems(){
-        //TODO implement
-        return Collections.emptyList();
+    public ModelList<InvoiceItem> getInvoiceItems(){
+        return InvoiceItem.forInvoice(invoiceId);
     }
+
     public Customer getCustomer() {
-        return null;
+        if (customer != null && customer.getCustomerId().equals(customerId)) {
+            return customer;
+        }
+        return Customer.find(customerId);
+    }
+
+    @Override
+    void preload(String relation, List<? extends Model> invoices) {
+        if ("customer".equals(relation)) {
+            Set<Long> customerIds = new HashSet<>();
+            for (Model model : invoices) {
+                customerIds.add(((Invoice) model).customerId);
+            }
+            Map<Long, Customer> customers = Customer.findAll(customerIds);
+            for (Model model : invoices) {
+                Invoice invoice = (Invoice) model;
+                invoice.customer = customers.get(invoice.customerId);
+            }
+        } else {
+            super.preload(relation, invoices);
+        }
+    }
+
+    public Long getCustomerId() {
+        return customerId;
     }
 
     public Long getInvoiceId() {
@@ -93,11 +125,11 @@ public class Invoice extends Model {
         this.total = total;
     }
 
-    public static List<Invoice> all() {
+    public static ModelList<Invoice> all() {
         return all(0, Integer.MAX_VALUE);
     }
 
-    public static List<Invoice> all(int page, int count) {
+    public static ModelList<Invoice> all(int page, int count) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(
                      "SELECT * FROM invoices LIMIT ? OFFSET ?"
@@ -105,7 +137,7 @@ public class Invoice extends Model {
             stmt.setInt(1, count);
             stmt.setInt(2, count*page -count);
             ResultSet results = stmt.executeQuery();
-            List<Invoice> resultList = new LinkedList<>();
+            ModelList<Invoice> resultList = new ModelList<>();
             while (results.next()) {
                 resultList.add(new Invoice(results));
             }
@@ -115,6 +147,19 @@ public class Invoice extends Model {
         }
     }
 
+    public static CursorList<Invoice> all(Cursor cursor, int count) {
+        return seek("SELECT * FROM invoices", Collections.emptyList(), Collections.emptyList(),
+                new String[]{"InvoiceId"}, cursor, count, Invoice::new);
+    }
+
+    public static Map<Long, Invoice> findAll(Collection<Long> invoiceIds) {
+        Map<Long, Invoice> invoices = new HashMap<>();
+        for (Invoice invoice : findAllByIds("SELECT * FROM invoices WHERE InvoiceId", invoiceIds, Invoice::new)) {
+            invoices.put(invoice.getInvoiceId(), invoice);
+        }
+        return invoices;
+    }
+
     public static Invoice find(long invoiceId) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM invoices WHERE InvoiceId=?")) {
@@ -1,6 +1,16 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.DB;
+
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class InvoiceItem extends Model {
 
@@ -9,12 +19,61 @@ public class InvoiceItem extends Model {
     Long trackId;
     BigDecimal unitPrice;
     Long quantity;
+    private transient Track track;
+
+    public InvoiceItem() {
+    }
+
+    private InvoiceItem(ResultSet results) throws SQLException {
+        invoiceLineId = results.getLong("InvoiceLineId");
+        invoiceId = results.getLong("InvoiceId");
+        trackId = results.getLong("TrackId");
+        unitPrice = results.getBigDecimal("UnitPrice");
+        quantity = results.getLong("Quantity");
+    }
 
     public Track getTrack() {
-        return null;
+        if (track != null && track.getTrackId().equals(trackId)) {
+            return track;
+        }
+        return Track.find(trackId);
     }
     public Invoice getInvoice() {
-        return null;
+        return Invoice.find(invoiceId);
+    }
+
+    @Override
+    void preload(String relation, List<? extends Model> items) {
+        if ("track".equals(relation)) {
+            Set<Long> trackIds = new HashSet<>();
+            for (Model model : items) {
+                trackIds.add(((InvoiceItem) model).trackId);
+            }
+            Map<Long, Track> tracks = Track.findAll(trackIds);
+            for (Model model : items) {
+                InvoiceItem item = (InvoiceItem) model;
+                item.track = tracks.get(item.trackId);
+            }
+        } else {
+            super.preload(relation, items);
+        }
+    }
+
+    public static ModelList<InvoiceItem> forInvoice(Long invoiceId) {
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT * FROM invoice_items WHERE InvoiceId=? ORDER BY InvoiceLineId"
+             )) {
+            stmt.setLong(1, invoiceId);
+            ResultSet results = stmt.executeQuery();
+            ModelList<InvoiceItem> resultList = new ModelList<>();
+            while (results.next()) {
+                resultList.add(new InvoiceItem(results));
+            }
+            return resultList;
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
     }
 
     public Long getInvoiceLineId() {
@@ -48,4 +48,22 @@ public class MediaType extends Model {
         }
     }
 
+    public static MediaType find(long i) {
+        return findCached(MediaType.class, i, MediaType::load);
+    }
+
+    private static MediaType load(long i) {
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM media_types WHERE MediaTypeId=?")) {
+            stmt.setLong(1, i);
+            ResultSet results = stmt.executeQuery();
+            if (results.next()) {
+                return new MediaType(results);
+            } else {
+                return null;
+            }
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+    }
 }
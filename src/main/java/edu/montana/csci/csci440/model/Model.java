@@ -1,13 +1,31 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
+import edu.montana.csci.csci440.util.DB;
+import edu.montana.csci.csci440.util.EntityCache;
+import edu.montana.csci.csci440.util.ModelVersions;
+import edu.montana.csci.csci440.util.UnitOfWork;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 // base class for entities
-public class Model {
+public class Model implements Cloneable {
 
     List<String> _errors = new LinkedList<>();
 
@@ -39,42 +57,437 @@ public class Model {
         return _errors.size() > 0;
     }
 
+    // batch loads a relation onto a list of models of this type, see ModelList.including
+    void preload(String relation, List<? extends Model> models) {
+        throw new IllegalArgumentException(getClass().getSimpleName() + " has no relation named " + relation);
+    }
+
+    interface Finder<T> {
+        T find(long id);
+    }
+
+    // inside a unit of work each row is materialized once, finding the same id again returns that instance.
+    // Types with a shared entity cache are served from it across requests
+    static <T extends Model> T findCached(Class<T> type, long id, Finder<T> finder) {
+        UnitOfWork unitOfWork = DB.currentUnitOfWork();
+        if (unitOfWork == null) {
+            return findShared(type, id, finder, null);
+        }
+        T model = unitOfWork.getIdentityMap().get(type, id);
+        if (model == null) {
+            model = findShared(type, id, finder, unitOfWork);
+            if (model != null) {
+                unitOfWork.getIdentityMap().put(type, id, model);
+            }
+        }
+        return model;
+    }
+
+    // the shared cache holds private copies, so callers can modify what they get back
+    private static <T extends Model> T findShared(Class<T> type, long id, Finder<T> finder, UnitOfWork unitOfWork) {
+        EntityCache cache = DB.entityCache(type);
+        if (cache == null || (unitOfWork != null && unitOfWork.hasWritten())) {
+            // a unit of work that has written may read its own uncommitted rows, which must not be shared
+            return finder.find(id);
+        }
+        Object cached = cache.get(id);
+        if (cached != null) {
+            return type.cast(((Model) cached).copy());
+        }
+        long since = unitOfWork == null ? ModelVersions.current() : unitOfWork.getStartVersion();
+        T model = finder.find(id);
+        if (model != null) {
+            // a transaction that began before the latest write to this type reads the row as it was before
+            // it.  Checked under the cache's lock, as forget bumps the version before it removes the row
+            synchronized (cache) {
+                if (!ModelVersions.changedSince(type, since)) {
+                    cache.put(id, model.copy());
+                }
+            }
+        }
+        return model;
+    }
+
+    // called by create, update and delete so later finds read the row again, and anything built
+    // from this type's rows is rebuilt
+    static void forget(Class<? extends Model> type, Long id) {
+        ModelVersions.bump(type);
+        if (id == null) {
+            return;
+        }
+        EntityCache cache = DB.entityCache(type);
+        if (cache != null) {
+            cache.remove(id);
+        }
+        UnitOfWork unitOfWork = DB.currentUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.getIdentityMap().remove(type, id);
+            // another request may cache the old row again before this transaction commits
+            unitOfWork.onEnd(() -> {
+                ModelVersions.bump(type);
+                if (cache != null) {
+                    cache.remove(id);
+                }
+            });
+        }
+    }
+
+    Model copy() {
+        try {
+            Model copy = (Model) clone();
+            copy._errors = new LinkedList<>(_errors);
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    interface RowMapper<T> {
+        T map(ResultSet results) throws SQLException;
+    }
+
+    // runs "<select> IN (?, ?, ...)" over the ids in batches, so a whole page needs a single query
+    static <T> List<T> findAllByIds(String select, Collection<Long> ids, RowMapper<T> mapper) {
+        List<T> resultList = new LinkedList<>();
+        List<Long> batch = new ArrayList<>();
+        for (Long id : ids) {
+            if (id != null) {
+                batch.add(id);
+            }
+            if (batch.size() == 500) {
+                findBatch(select, batch, mapper, resultList);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            findBatch(select, batch, mapper, resultList);
+        }
+        return resultList;
+    }
+
+    private static <T> void findBatch(String select, List<Long> ids, RowMapper<T> mapper, List<T> resultList) {
+        StringBuilder query = new StringBuilder(select).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setLong(i + 1, ids.get(i));
+            }
+            ResultSet results = stmt.executeQuery();
+            while (results.next()) {
+                resultList.add(mapper.map(results));
+            }
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+    }
+
+    // a page of rows in the order of keys, starting after the cursor or ending before it, or the first page
+    // without one.  The keyset condition lets SQLite seek straight to the page however deep it is, where an
+    // OFFSET steps over every row in front of it.  The last key must be unique, e.g. the primary key
+    static <T extends Model> CursorList<T> seek(String select, List<String> where, List<Object> args,
+                                                String[] keys, Cursor cursor, int count, RowMapper<T> mapper) {
+        List<Object> queryArgs = new ArrayList<>(args);
+        cursor = matching(cursor, keys);
+        String query = seekQuery(select, where, keys, cursor, count, queryArgs);
+        return seek(query, queryArgs, keys, cursor, count, mapper);
+    }
+
+    // the query seek runs, adding its parameters to args.  The cursor must already match the keys
+    static String seekQuery(String select, List<String> where, String[] keys, Cursor cursor, int count, List<Object> args) {
+        if (cursor != null && nullsPast(keys[0], cursor)) {
+            // past the cursor are the lower values and then every NULL, which sorts below any value.  One range
+            // can't seek to both, so each part is read up to a page on its own and the two are merged
+            List<String> values = new ArrayList<>(where);
+            values.add(seekCondition(keys, cursor, args, false));
+            String lower = page(select, values, keys, cursor, count, args);
+            List<String> nulls = new ArrayList<>(where);
+            nulls.add(column(keys[0]) + " IS NULL");
+            String rest = page(select, nulls, keys, cursor, count, args);
+            String[] resultKeys = new String[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                resultKeys[i] = keys[i].substring(keys[i].lastIndexOf('.') + 1);
+            }
+            args.add(count + 1);
+            return "SELECT * FROM (" + lower + ") UNION ALL SELECT * FROM (" + rest + ") " +
+                    "ORDER BY " + seekOrder(resultKeys, cursor) + " LIMIT ?";
+        }
+        List<String> conditions = new ArrayList<>(where);
+        if (cursor != null) {
+            conditions.add(seekCondition(keys, cursor, args));
+        }
+        return page(select, conditions, keys, cursor, count, args);
+    }
+
+    private static String page(String select, List<String> conditions, String[] keys, Cursor cursor, int count, List<Object> args) {
+        String query = select;
+        if (!conditions.isEmpty()) {
+            query += " WHERE " + String.join(" AND ", conditions);
+        }
+        query += " ORDER BY " + seekOrder(keys, cursor) + " LIMIT ?";
+        args.add(count + 1);
+        return query;
+    }
+
+    // runs a query already limited to count + 1 rows in seekOrder, for callers that build their own,
+    // and works out the cursors on either side of the page from the key columns of its rows
+    static <T extends Model> CursorList<T> seek(String query, List<Object> args, String[] keys,
+                                                Cursor cursor, int count, RowMapper<T> mapper) {
+        CursorList<T> page = new CursorList<>();
+        LinkedList<Object[]> pageKeys = new LinkedList<>();
+        boolean more = false;
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < args.size(); i++) {
+                stmt.setObject(i + 1, args.get(i));
+            }
+            ResultSet results = stmt.executeQuery();
+            while (results.next()) {
+                if (page.size() == count) {
+                    more = true;
+                    break;
+                }
+                Object[] values = new Object[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    String column = column(keys[i]);
+                    values[i] = results.getObject(column.substring(column.lastIndexOf('.') + 1));
+                }
+                page.add(mapper.map(results));
+                pageKeys.add(values);
+            }
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+        boolean backward = cursor != null && cursor.isBackward();
+        if (backward) {
+            Collections.reverse(page);
+            Collections.reverse(pageKeys);
+        }
+        Cursor previous = null;
+        Cursor next = null;
+        if (page.isEmpty()) {
+            // paged past either end, offer the way back
+            if (cursor != null) {
+                previous = backward ? null : cursor.reverse();
+                next = backward ? cursor.reverse() : null;
+            }
+        } else {
+            if (backward ? more : cursor != null) {
+                previous = Cursor.before(pageKeys.getFirst()).in(order(keys));
+            }
+            if (backward || more) {
+                next = Cursor.after(pageKeys.getLast()).in(order(keys));
+            }
+        }
+        page.setCursors(previous, next);
+        return page;
+    }
+
+    // "(a, b) > (?, ?)", SQLite compares row values in order and uses an index on (a, b) to seek.  Keys
+    // sorted in different directions can't share one comparison, and a NULL compares as neither, so those
+    // get past the cursor on the first key, or level with it and past it on the next, and so on, with a
+    // bound on the first key to seek on
+    static String seekCondition(String[] keys, Cursor cursor, List<Object> args) {
+        return seekCondition(keys, cursor, args, true);
+    }
+
+    // without nulls, rows whose first key is NULL are left to the caller, see seekQuery
+    private static String seekCondition(String[] keys, Cursor cursor, List<Object> args, boolean nulls) {
+        List<Object> values = cursor.getValues();
+        boolean uniform = true;
+        for (String key : keys) {
+            uniform &= descending(key) == descending(keys[0]) && !nullable(key);
+        }
+        if (uniform) {
+            args.addAll(values);
+            List<String> columns = new ArrayList<>();
+            for (String key : keys) {
+                columns.add(column(key));
+            }
+            String placeholders = String.join(", ", Collections.nCopies(keys.length, "?"));
+            return "(" + String.join(", ", columns) + ") " + (downwards(keys[0], cursor) ? "<" : ">") + " (" + placeholders + ")";
+        }
+        StringBuilder condition = new StringBuilder();
+        String bound = bound(keys[0], values.get(0), cursor, args, nulls);
+        if (bound != null) {
+            condition.append(bound).append(" AND ");
+        }
+        StringBuilder close = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            condition.append('(').append(past(keys[i], values.get(i), cursor, args, nulls || i > 0));
+            if (i < keys.length - 1) {
+                condition.append(" OR (").append(level(keys[i], values.get(i), args)).append(" AND ");
+                close.append("))");
+            } else {
+                condition.append(')');
+            }
+        }
+        return condition.append(close).toString();
+    }
+
+    // the first key's range, which SQLite seeks on, or null when every row is in it
+    private static String bound(String key, Object value, Cursor cursor, List<Object> args, boolean nulls) {
+        String column = column(key);
+        boolean downwards = downwards(key, cursor);
+        if (value == null) {
+            return downwards ? column + " IS NULL" : null;
+        }
+        args.add(value);
+        if (downwards && nulls && nullable(key)) {
+            return "(" + column + " <= ? OR " + column + " IS NULL)";
+        }
+        return column + (downwards ? " <= ?" : " >= ?");
+    }
+
+    // rows past the value on this key.  NULL sorts below every value, so it comes after any value when the
+    // cursor reads the key downwards, and before any value reading upwards
+    private static String past(String key, Object value, Cursor cursor, List<Object> args, boolean nulls) {
+        String column = column(key);
+        boolean downwards = downwards(key, cursor);
+        if (value == null) {
+            return downwards ? "0" : column + " IS NOT NULL";
+        }
+        args.add(value);
+        if (downwards && nulls && nullable(key)) {
+            return "(" + column + " < ? OR " + column + " IS NULL)";
+        }
+        return column + (downwards ? " < ?" : " > ?");
+    }
+
+    private static String level(String key, Object value, List<Object> args) {
+        if (value == null) {
+            return column(key) + " IS NULL";
+        }
+        args.add(value);
+        return column(key) + " = ?";
+    }
+
+    // backward pages are read nearest first and put back in order afterwards
+    static String seekOrder(String[] keys, Cursor cursor) {
+        if (cursor == null || !cursor.isBackward()) {
+            return String.join(", ", keys);
+        }
+        List<String> reversed = new ArrayList<>();
+        for (String key : keys) {
+            reversed.add(column(key) + (descending(key) ? "" : " DESC"));
+        }
+        return String.join(", ", reversed);
+    }
+
+    // the cursor reads this key from higher values to lower ones
+    private static boolean downwards(String key, Cursor cursor) {
+        return descending(key) != cursor.isBackward();
+    }
+
+    // the rows past a cursor include NULLs on the first key that can't be sought to with the values' range
+    private static boolean nullsPast(String key, Cursor cursor) {
+        return downwards(key, cursor) && cursor.getValues().get(0) != null && nullable(key);
+    }
+
+    // keys are ORDER BY terms, "tracks.Milliseconds DESC" is read from the row's Milliseconds column
+    private static boolean descending(String key) {
+        return key.toUpperCase().endsWith(" DESC");
+    }
+
+    private static String column(String key) {
+        return key.replaceFirst("(?i)\\s+(ASC|DESC)$", "");
+    }
+
+    private static final ConcurrentMap<String, Boolean> NULLABLE_KEYS = new ConcurrentHashMap<>();
+
+    // whether a "table.Column" key can hold NULL, from the table's declaration.  Keys that aren't a table's
+    // column, like an FTS rank, are taken to be NOT NULL
+    private static boolean nullable(String key) {
+        return NULLABLE_KEYS.computeIfAbsent(column(key), column -> {
+            int dot = column.indexOf('.');
+            if (dot < 0) {
+                return false;
+            }
+            try (Connection conn = DB.connect();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT \"notnull\", pk FROM pragma_table_info(?) WHERE name = ?")) {
+                stmt.setString(1, column.substring(0, dot));
+                stmt.setString(2, column.substring(dot + 1));
+                ResultSet results = stmt.executeQuery();
+                return results.next() && results.getInt("notnull") == 0 && results.getInt("pk") == 0;
+            } catch (SQLException sqlException) {
+                throw new RuntimeException(sqlException);
+            }
+        });
+    }
+
+    // names the order a listing's cursors were taken in, short enough to ride along in every link
+    static String order(String[] keys) {
+        return Integer.toHexString(String.join(",", keys).hashCode());
+    }
+
+    // a cursor from a listing sorted some other way is treated as no cursor at all
+    static Cursor matching(Cursor cursor, String[] keys) {
+        if (cursor == null || cursor.getValues().size() != keys.length || !order(keys).equals(cursor.getOrder())) {
+            return null;
+        }
+        return cursor;
+    }
+
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj == null) {
             return  false;
         }
         if (obj.getClass() != this.getClass()) {
             return false;
         }
-        Field[] declaredFields = this.getClass().getDeclaredFields();
-        for (Field declaredField : declaredFields) {
-            declaredField.setAccessible(true);
-            try {
-                if (!Objects.equals(declaredField.get(this), (declaredField.get(obj)))) {
-                    return false;
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
+        for (MethodHandle getter : ROW_FIELDS.get(getClass())) {
+            if (!Objects.equals(get(getter, this), get(getter, obj))) {
                 return false;
             }
         }
         return true;
     }
 
+    // same value as Objects.hash over the row fields, without boxing them into an array
     @Override
     public int hashCode() {
-        Field[] declaredFields = this.getClass().getDeclaredFields();
-        List<Object> values = new LinkedList<>();
-        for (Field declaredField : declaredFields) {
-            declaredField.setAccessible(true);
-            try {
-                values.add(declaredField.get(this));
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-                return 0;
-            }
+        int result = 1;
+        for (MethodHandle getter : ROW_FIELDS.get(getClass())) {
+            result = 31 * result + Objects.hashCode(get(getter, this));
+        }
+        return result;
+    }
+
+    private static Object get(MethodHandle getter, Object model) {
+        try {
+            return (Object) getter.invokeExact(model);
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
         }
-        return Objects.hash(values.toArray());
     }
+
+    // getters for the declared row fields of each model class, looked up once per class.
+    // Preloaded relations are transient, they are a cache and not part of the row
+    private static final ClassValue<MethodHandle[]> ROW_FIELDS = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            List<MethodHandle> getters = new ArrayList<>();
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isTransient(modifiers) || Modifier.isStatic(modifiers)) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    getters.add(MethodHandles.lookup().unreflectGetter(field)
+                            .asType(MethodType.methodType(Object.class, Object.class)));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return getters.toArray(new MethodHandle[0]);
+        }
+    };
 }
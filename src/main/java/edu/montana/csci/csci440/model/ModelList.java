@@ -0,0 +1,17 @@
+package edu.montana.csci.csci440.model;
+
+import java.util.LinkedList;
+
+// a page of models that can batch load their relations, e.g. Album.all(1, 10).including("artist")
+public class ModelList<T extends Model> extends LinkedList<T> {
+
+    // loads each named relation for every model in the list with one query per relation
+    public ModelList<T> including(String... relations) {
+        if (!isEmpty()) {
+            for (String relation : relations) {
+                getFirst().preload(relation, this);
+            }
+        }
+        return this;
+    }
+}
@@ -1,5 +1,6 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 
 import java.sql.Connection;
@@ -26,19 +27,7 @@ public class Playlist extends Model {
 
 
     public List<Track> getTracks(){
-        try (Connection conn = DB.connect();
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM tracks LEFT JOIN playlist_track pt on tracks.TrackId = pt.TrackId" +
-                     " WHERE pt.PlaylistId=? ORDER BY tracks.Name")) {
-            stmt.setLong(1, this.getPlaylistId());
-            ResultSet results = stmt.executeQuery();
-            List<Track> resultList = new LinkedList<>();
-            while (results.next()) {
-                resultList.add(new Track(results));
-            }
-            return resultList;
-        } catch (SQLException sqlException) {
-            throw new RuntimeException(sqlException);
-        }
+        return Track.forPlaylist(playlistId);
     }
 
     public Long getPlaylistId() {
@@ -75,7 +64,16 @@ public class Playlist extends Model {
         }
     }
 
+    public static CursorList<Playlist> all(Cursor cursor, int count) {
+        return seek("SELECT * FROM playlists", Collections.emptyList(), Collections.emptyList(),
+                new String[]{"PlaylistId"}, cursor, count, Playlist::new);
+    }
+
     public static Playlist find(int i) {
+        return findCached(Playlist.class, i, Playlist::load);
+    }
+
+    private static Playlist load(long i) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement("SELECT * FROM playlists WHERE PlaylistId=?")) {
             stmt.setLong(1, i);
@@ -0,0 +1,166 @@
+package edu.montana.csci.csci440.model;
+
+import edu.montana.csci.csci440.util.DB;
+import edu.montana.csci.csci440.util.ModelVersions;
+import edu.montana.csci.csci440.util.TrigramIndex;
+import edu.montana.csci.csci440.util.UnitOfWork;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// search-as-you-type over track names, album titles and artist names, answered from trigram indexes held
+// in memory.  The indexes are built from the tables once, then kept up to date by the models' own writes;
+// a write made in a request is only applied once its transaction commits
+public class Suggestion {
+
+    public enum Kind {
+        TRACK("/tracks/"), ALBUM("/albums/"), ARTIST("/artists/");
+
+        private final String path;
+
+        Kind(String path) {
+            this.path = path;
+        }
+    }
+
+    private static final Object BUILD_LOCK = new Object();
+    private static volatile Indexes indexes;
+
+    static {
+        // the tables were replaced underneath the models
+        ModelVersions.onBumpAll(() -> indexes = null);
+    }
+
+    private final Kind kind;
+    private final long id;
+    private final String name;
+    private final double score;
+
+    private Suggestion(Kind kind, TrigramIndex.Hit hit) {
+        this.kind = kind;
+        this.id = hit.getId();
+        this.name = hit.getText();
+        this.score = hit.getScore();
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getType() {
+        return kind.name().toLowerCase();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getUrl() {
+        return kind.path + id;
+    }
+
+    // the best matches across all three kinds
+    public static List<Suggestion> suggest(String query, int limit) {
+        Indexes current = indexes();
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (Kind kind : Kind.values()) {
+            for (TrigramIndex.Hit hit : current.get(kind).search(query, limit)) {
+                suggestions.add(new Suggestion(kind, hit));
+            }
+        }
+        suggestions.sort(Comparator.comparingDouble(Suggestion::getScore).reversed()
+                .thenComparingInt(suggestion -> suggestion.name.length())
+                .thenComparing(Suggestion::getKind)
+                .thenComparingLong(Suggestion::getId));
+        return suggestions.size() > limit ? new ArrayList<>(suggestions.subList(0, limit)) : suggestions;
+    }
+
+    // loads the indexes now rather than on the first suggestion, for startup
+    public static void build() {
+        indexes();
+    }
+
+    // called by the models after writing a name, a null name removes the row
+    static void indexed(Kind kind, Long id, String name) {
+        if (id == null) {
+            return;
+        }
+        UnitOfWork unitOfWork = DB.currentUnitOfWork();
+        if (unitOfWork == null) {
+            apply(kind, id, name);
+        } else {
+            unitOfWork.onEnd(() -> {
+                if (unitOfWork.isCommitted()) {
+                    apply(kind, id, name);
+                }
+            });
+        }
+    }
+
+    private static void apply(Kind kind, long id, String name) {
+        Indexes current = indexes;
+        if (current == null) {
+            synchronized (BUILD_LOCK) {
+                current = indexes;
+                // a load in progress holds the lock, so this write lands after it.  With nothing loaded
+                // the next load reads the row as written
+                if (current == null) {
+                    return;
+                }
+            }
+        }
+        current.get(kind).put((int) id, name);
+    }
+
+    private static Indexes indexes() {
+        Indexes current = indexes;
+        if (current == null) {
+            synchronized (BUILD_LOCK) {
+                current = indexes;
+                if (current == null) {
+                    current = new Indexes();
+                    indexes = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static class Indexes {
+        private final TrigramIndex tracks = new TrigramIndex();
+        private final TrigramIndex albums = new TrigramIndex();
+        private final TrigramIndex artists = new TrigramIndex();
+
+        private Indexes() {
+            for (Track track : Track.all()) {
+                tracks.put(track.getTrackId().intValue(), track.getName());
+            }
+            for (Album album : Album.all()) {
+                albums.put(album.getAlbumId().intValue(), album.getTitle());
+            }
+            for (Artist artist : Artist.all()) {
+                artists.put(artist.getArtistId().intValue(), artist.getName());
+            }
+        }
+
+        private TrigramIndex get(Kind kind) {
+            switch (kind) {
+                case TRACK:
+                    return tracks;
+                case ALBUM:
+                    return albums;
+                default:
+                    return artists;
+            }
+        }
+    }
+}
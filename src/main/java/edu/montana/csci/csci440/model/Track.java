@@ -1,6 +1,8 @@
 package edu.montana.csci.csci440.model;
 
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
+import edu.montana.csci.csci440.util.SortSpec;
 import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
 
@@ -11,10 +13,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class Track extends Model {
 
@@ -31,6 +36,30 @@ public class Track extends Model {
 
     public static final String REDIS_CACHE_KEY = "cs440-tracks-count-cache";
 
+    // pulls the album title and artist name in with each track, so hydrating a row needs no extra queries
+    static final String SELECT_TRACKS = "SELECT tracks.*, albums.Title AS AlbumTitle, artists.Name AS ArtistName " +
+            "FROM tracks " +
+            "LEFT JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+            "LEFT JOIN artists ON albums.ArtistId = artists.ArtistId";
+
+    // each backed by an index from Schema, so a sorted page is read in index order instead of sorting tracks
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "Milliseconds", "tracks.Milliseconds",
+            "Bytes", "tracks.Bytes",
+            "UnitPrice", "tracks.UnitPrice",
+            "Name", "tracks.Name");
+
+    // tracks matching a tracks_fts MATCH in the WHERE clause.  The CROSS JOIN keeps the index as the outer
+    // loop, otherwise SQLite may scan tracks and probe the index once per row
+    private static final String SELECT_MATCHING_TRACKS = "SELECT tracks.*, albums.Title AS AlbumTitle, artists.Name AS ArtistName " +
+            "FROM tracks_fts " +
+            "CROSS JOIN tracks ON tracks.TrackId = tracks_fts.rowid " +
+            "LEFT JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+            "LEFT JOIN artists ON albums.ArtistId = artists.ArtistId";
+
+    // every match of a search with its BM25 rank, ranked in full so the best match is found wherever it is
+    private static final String RANKED_MATCHES = "SELECT rowid, rank FROM tracks_fts WHERE tracks_fts MATCH ?";
+
     public Track() {
         mediaTypeId = 1l;
         genreId = 1l;
@@ -76,13 +105,17 @@ public class Track extends Model {
         albumId = results.getLong("AlbumId");
         mediaTypeId = results.getLong("MediaTypeId");
         genreId = results.getLong("GenreId");
-        albumTitle = getAlbum().getTitle(); // cache
-        artistName = getAlbum().getArtist().getName(); //cache
+        albumTitle = results.getString("AlbumTitle");
+        artistName = results.getString("ArtistName");
     }
 
     public static Track find(long i) {
+        return findCached(Track.class, i, Track::load);
+    }
+
+    private static Track load(long i) {
         try (Connection conn = DB.connect();
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM tracks WHERE TrackId=?")) {
+             PreparedStatement stmt = conn.prepareStatement(SELECT_TRACKS + " WHERE tracks.TrackId=?")) {
             stmt.setLong(1, i);
             ResultSet results = stmt.executeQuery();
             if (results.next()) {
@@ -95,6 +128,14 @@ public class Track extends Model {
         }
     }
 
+    public static Map<Long, Track> findAll(Collection<Long> trackIds) {
+        Map<Long, Track> tracks = new HashMap<>();
+        for (Track track : findAllByIds(SELECT_TRACKS + " WHERE tracks.TrackId", trackIds, Track::new)) {
+            tracks.put(track.getTrackId(), track);
+        }
+        return tracks;
+    }
+
     public static Long count() {
         Jedis redisClient = new Jedis(); // use this class to access redis and create a cache
 
@@ -120,9 +161,13 @@ public class Track extends Model {
         return Album.find(albumId);
     }
 
-    public MediaType getMediaType() { return null;}
+    public MediaType getMediaType() {
+        return MediaType.find(mediaTypeId);
+    }
 
-    public Genre getGenre() { return null;}
+    public Genre getGenre() {
+        return Genre.find(genreId);
+    }
 
     public List<Playlist> getPlaylists(){
         try (Connection conn = DB.connect();
@@ -218,33 +263,26 @@ public class Track extends Model {
     }
 
     public String getArtistName() {
-        // TODO implement more efficiently
-        //  hint: cache on this model object
-        return this.artistName = artistName;
+        return artistName;
     }
 
     public String getAlbumTitle() {
-        // TODO implement more efficiently
-        //  hint: cache on this model object
-        return this.albumTitle = albumTitle;
+        return albumTitle;
     }
 
     public static List<Track> advancedSearch(int page, int count,
                                              String search, Integer artistId, Integer albumId,
                                              Integer maxRuntime, Integer minRuntime) {
-        LinkedList<Object> args = new LinkedList<>();
-
-        String query = "SELECT * FROM tracks " +
-                "JOIN albums ON tracks.AlbumId = albums.AlbumId " +
-                "WHERE name LIKE ?";
-        args.add("%" + search + "%");
-
-        // Conditionally include the query and argument
-        if (artistId != null) {
-            query += " AND ArtistId=? ";
-            args.add(artistId);
-        }
+        return advancedSearch(page, count, search, artistId, albumId, null, null, maxRuntime, minRuntime);
+    }
 
+    // runtimes are in seconds, as typed into the search form
+    public static List<Track> advancedSearch(int page, int count,
+                                             String search, Integer artistId, Integer albumId,
+                                             Integer genreId, Integer mediaTypeId,
+                                             Integer maxRuntime, Integer minRuntime) {
+        LinkedList<Object> args = new LinkedList<>();
+        String query = advancedSearchQuery(args, search, artistId, albumId, genreId, mediaTypeId, maxRuntime, minRuntime);
         query += " LIMIT ? OFFSET ?";
         args.add(count);
         args.add(page*count-count);
@@ -266,12 +304,70 @@ public class Track extends Model {
         }
     }
 
+    // every filter has an index to start from, see the migrations in Schema: a name match starts from
+    // tracks_fts, the others from an index on tracks or albums
+    static String advancedSearchQuery(List<Object> args, String search, Integer artistId, Integer albumId,
+                                      Integer genreId, Integer mediaTypeId, Integer maxRuntime, Integer minRuntime) {
+        LinkedList<String> where = new LinkedList<>();
+
+        String match = matchQuery(search, "Name");
+        String query = match != null ? SELECT_MATCHING_TRACKS : SELECT_TRACKS;
+        if (match != null) {
+            where.add("tracks_fts MATCH ?");
+            args.add(match);
+        }
+
+        // Conditionally include the query and argument
+        if (artistId != null) {
+            where.add("albums.ArtistId=?");
+            args.add(artistId);
+        }
+        if (albumId != null) {
+            where.add("tracks.AlbumId=?");
+            args.add(albumId);
+        }
+        if (genreId != null) {
+            where.add("tracks.GenreId=?");
+            args.add(genreId);
+        }
+        if (mediaTypeId != null) {
+            where.add("tracks.MediaTypeId=?");
+            args.add(mediaTypeId);
+        }
+        if (minRuntime != null) {
+            where.add("tracks.Milliseconds>=?");
+            args.add(minRuntime * 1000L);
+        }
+        if (maxRuntime != null) {
+            where.add("tracks.Milliseconds<=?");
+            args.add(maxRuntime * 1000L);
+        }
+
+        if (!where.isEmpty()) {
+            query += " WHERE " + String.join(" AND ", where);
+        }
+        if (match != null) {
+            query += " ORDER BY tracks_fts.rank, tracks.TrackId";
+        }
+        return query;
+    }
+
+    // best matches first by BM25 over the track, album and artist names, each word matching as a prefix
     public static List<Track> search(int page, int count, String orderBy, String search) {
-        String query = "SELECT * FROM tracks WHERE name LIKE ? LIMIT ? OFFSET ?";
-        search = "%" + search + "%";
+        String match = matchQuery(search, null);
+        if (match == null) {
+            return all(page, count);
+        }
+        // the page is ranked and cut from the index alone, so only its rows are joined to the other tables
+        String query = "SELECT tracks.*, albums.Title AS AlbumTitle, artists.Name AS ArtistName " +
+                "FROM (" + RANKED_MATCHES + " ORDER BY rank, rowid LIMIT ? OFFSET ?) AS hits " +
+                "CROSS JOIN tracks ON tracks.TrackId = hits.rowid " +
+                "LEFT JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+                "LEFT JOIN artists ON albums.ArtistId = artists.ArtistId " +
+                "ORDER BY hits.rank, hits.rowid";
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, search);
+            stmt.setString(1, match);
             stmt.setInt(2, count);
             stmt.setInt(3, count*page -count);
             ResultSet results = stmt.executeQuery();
@@ -285,8 +381,54 @@ public class Track extends Model {
         }
     }
 
+    // keyset paged search, ordered by rank then TrackId.  The seek is on the index's own rank and rowid,
+    // inside the subquery, so only the page's rows are joined to the other tables
+    public static CursorList<Track> search(Cursor cursor, int count, String search) {
+        String match = matchQuery(search, null);
+        if (match == null) {
+            return all(cursor, count, null);
+        }
+        String[] keys = {"SearchRank", "TrackId"};
+        String[] indexKeys = {"rank", "rowid"};
+        cursor = matching(cursor, keys);
+        List<Object> args = new ArrayList<>();
+        args.add(match);
+        String hits = RANKED_MATCHES;
+        if (cursor != null) {
+            hits += " AND " + seekCondition(indexKeys, cursor, args);
+        }
+        hits += " ORDER BY " + seekOrder(indexKeys, cursor) + " LIMIT ?";
+        args.add(count + 1);
+        String query = "SELECT tracks.*, albums.Title AS AlbumTitle, artists.Name AS ArtistName, hits.rank AS SearchRank " +
+                "FROM (" + hits + ") AS hits " +
+                "CROSS JOIN tracks ON tracks.TrackId = hits.rowid " +
+                "LEFT JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+                "LEFT JOIN artists ON albums.ArtistId = artists.ArtistId " +
+                "ORDER BY " + seekOrder(new String[]{"hits.rank", "hits.rowid"}, cursor);
+        return seek(query, args, keys, cursor, count, Track::new);
+    }
+
+    // the words typed into a search box as an FTS5 query against tracks_fts, each a quoted prefix so
+    // "led zep" finds "Led Zeppelin" and punctuation can't be read as query syntax.  Null when there are
+    // no words to search for
+    static String matchQuery(String search, String column) {
+        if (search == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : search.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                match.append(match.length() == 0 ? "" : " ").append('"').append(word).append("\"*");
+            }
+        }
+        if (match.length() == 0) {
+            return null;
+        }
+        return column == null ? match.toString() : column + " : (" + match + ")";
+    }
+
     public static List<Track> forAlbum(Long albumId) {
-        String query = "SELECT * FROM tracks WHERE AlbumId=?";
+        String query = SELECT_TRACKS + " WHERE tracks.AlbumId=?";
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setLong(1, albumId);
@@ -301,6 +443,24 @@ public class Track extends Model {
         }
     }
 
+    public static List<Track> forPlaylist(Long playlistId) {
+        String query = SELECT_TRACKS +
+                " JOIN playlist_track ON tracks.TrackId = playlist_track.TrackId" +
+                " WHERE playlist_track.PlaylistId=? ORDER BY tracks.Name";
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setLong(1, playlistId);
+            ResultSet results = stmt.executeQuery();
+            List<Track> resultList = new LinkedList<>();
+            while (results.next()) {
+                resultList.add(new Track(results));
+            }
+            return resultList;
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+    }
+
     public static List<Track> all() {
         return all(0, Integer.MAX_VALUE);
     }
@@ -308,7 +468,7 @@ public class Track extends Model {
     public static List<Track> all(int page, int count) {
         try (Connection conn = DB.connect();
              PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT * FROM tracks LIMIT ? OFFSET ?"
+                     SELECT_TRACKS + " LIMIT ? OFFSET ?"
              )) {
             stmt.setInt(1, count);
             stmt.setInt(2, count*page - count);
@@ -323,11 +483,26 @@ public class Track extends Model {
         }
     }
 
+    public static CursorList<Track> all(Cursor cursor, int count) {
+        return all(cursor, count, null);
+    }
+
+    // keyset paged in the order of a sort spec, see SortSpec and SORT_COLUMNS
+    public static CursorList<Track> all(Cursor cursor, int count, String orderBy) {
+        String[] keys = sortSpec(orderBy).getTerms().toArray(new String[0]);
+        return seek(SELECT_TRACKS, Collections.emptyList(), Collections.emptyList(), keys, cursor, count, Track::new);
+    }
+
+    // the columns a listing can be sorted by, in any combination and either direction, TrackId breaks ties
+    static SortSpec sortSpec(String orderBy) {
+        return SortSpec.parse(orderBy, SORT_COLUMNS, "tracks.TrackId");
+    }
+
     public static List<Track> all(int page, int count, String orderBy) {
         LinkedList<Object> args = new LinkedList<>();
 
-        String sqlQuery = "SELECT * FROM tracks";
-        sqlQuery += " ORDER BY " + orderBy;
+        String sqlQuery = SELECT_TRACKS;
+        sqlQuery += " ORDER BY " + sortSpec(orderBy).getOrderBy();
 
         sqlQuery += " LIMIT ? OFFSET ?";
         args.add(count);
@@ -353,7 +528,7 @@ public class Track extends Model {
     public boolean create() {
         Jedis redisClient = new Jedis("localhost",6379);
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                  PreparedStatement stmt = conn.prepareStatement(
                          "INSERT INTO tracks (name, Milliseconds, Bytes, UnitPrice, AlbumId, MediaTypeId, GenreId)" +
                                  " VALUES (?,?,?,?,?,?,?)")) {
@@ -366,6 +541,9 @@ public class Track extends Model {
                 stmt.setLong(7, this.getGenreId());
                 stmt.executeUpdate();
                 trackId = DB.getLastID(conn);
+                // sqlite can reuse the id of a deleted row
+                forget(Track.class, trackId);
+                Suggestion.indexed(Suggestion.Kind.TRACK, trackId, name);
                 redisClient.del(REDIS_CACHE_KEY);
 
                 return true;
@@ -381,11 +559,13 @@ public class Track extends Model {
     public void delete() {
         Jedis redisClient = new Jedis();
 
-        try (Connection conn = DB.connect();
+        try (Connection conn = DB.connectForWrite();
              PreparedStatement stmt = conn.prepareStatement(
                      "DELETE FROM tracks WHERE TrackId=?")) {
             stmt.setLong(1, this.getTrackId());
             stmt.executeUpdate();
+            forget(Track.class, trackId);
+            Suggestion.indexed(Suggestion.Kind.TRACK, trackId, null);
 
             redisClient.del(REDIS_CACHE_KEY);
         } catch (SQLException sqlException) {
@@ -395,7 +575,7 @@ public class Track extends Model {
     @Override
     public boolean update() {
         if (verify()) {
-            try (Connection conn = DB.connect();
+            try (Connection conn = DB.connectForWrite();
                  PreparedStatement stmt = conn.prepareStatement(
                          "UPDATE tracks SET (albumId, MediaTypeId, GenreId, Name, Milliseconds," +
                                  "bytes, UnitPrice) = (?, ?, ?, ?, ?, ?, ?) WHERE TrackId = ?;")) {
@@ -409,7 +589,8 @@ public class Track extends Model {
                 stmt.setBigDecimal(7, this.getUnitPrice());
                 stmt.setLong(8, this.getTrackId());
                 stmt.executeUpdate();
-                trackId = DB.getLastID(conn);
+                forget(Track.class, trackId);
+                Suggestion.indexed(Suggestion.Kind.TRACK, trackId, name);
                 return true;
             } catch (SQLException sqlException) {
                 throw new RuntimeException(sqlException);
@@ -0,0 +1,70 @@
+package edu.montana.csci.csci440.util;
+
+import spark.Request;
+
+import javax.servlet.http.HttpSession;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+// ETags for GET routes whose page only depends on the rows of a few models.  The tag is built from
+// those models' ModelVersions, so any write through the app changes it and a client that sends the
+// current tag back in If-None-Match gets a 304 before the route runs
+public class ConditionalGet {
+
+    // versions start over at zero on restart, so tags from an earlier process must not match
+    private static final String BOOT = Long.toString(System.currentTimeMillis(), 36);
+    private static final List<ConditionalGet> ROUTES = new CopyOnWriteArrayList<>();
+
+    private final Pattern path;
+    private final Class<?>[] models;
+
+    private ConditionalGet(String path, Class<?>[] models) {
+        this.path = Pattern.compile(path.replaceAll(":[^/]+", "[^/]+"));
+        this.models = models;
+    }
+
+    // path uses Spark's :param syntax
+    public static void register(String path, Class<?>... models) {
+        ROUTES.add(new ConditionalGet(path, models));
+    }
+
+    // the current ETag for the request, or null when the page cannot be tagged
+    static String etagFor(Request request) {
+        if (!"GET".equals(request.requestMethod()) || hasFlash(request)) {
+            return null;
+        }
+        for (ConditionalGet route : ROUTES) {
+            if (route.path.matcher(request.pathInfo()).matches()) {
+                StringBuilder etag = new StringBuilder("\"").append(BOOT);
+                for (Class<?> model : route.models) {
+                    etag.append('-').append(ModelVersions.get(model));
+                }
+                return etag.append('"').toString();
+            }
+        }
+        return null;
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag) || candidate.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // a flash message is shown once, so that page differs from the cached one
+    private static boolean hasFlash(Request request) {
+        HttpSession session = request.raw().getSession(false);
+        return session != null && (session.getAttribute(":message") != null || session.getAttribute(":error") != null);
+    }
+}
@@ -0,0 +1,321 @@
+package edu.montana.csci.csci440.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+// bounded pool of physical connections, handed out as proxies whose close() returns them to the pool
+public class ConnectionPool {
+
+    // a lease drops the statements already closed from its list once it holds this many
+    private static final int PRUNE_STATEMENTS_AT = 32;
+
+    public interface Factory {
+        Connection open() throws SQLException;
+    }
+
+    private final Factory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final LinkedList<PooledConnection> idle = new LinkedList<>();
+    private int size = 0;
+    private int generation = 0;
+    private long physicalCount = 0;
+    private long borrowCount = 0;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    public ConnectionPool(Factory factory, int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) {
+        this(factory, minSize, maxSize, idleTimeoutMillis, borrowTimeoutMillis, 0);
+    }
+
+    public ConnectionPool(Factory factory, int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool bounds: min=" + minSize + " max=" + maxSize);
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        if (idleTimeoutMillis > 0) {
+            Timer evictor = new Timer("connection-pool-evictor", true);
+            long period = Math.max(1000, idleTimeoutMillis / 2);
+            evictor.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, period, period);
+        }
+    }
+
+    // opens connections until the pool holds minSize of them, so the first requests don't pay for the opens
+    public void warmUp() throws SQLException {
+        while (true) {
+            synchronized (this) {
+                if (size >= minSize) {
+                    return;
+                }
+                size++;
+            }
+            giveBack(open(), false);
+        }
+    }
+
+    public Connection borrow() throws SQLException {
+        PooledConnection pooled = acquire();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Lease(pooled));
+    }
+
+    private PooledConnection acquire() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeoutMillis;
+        synchronized (this) {
+            while (true) {
+                while (!idle.isEmpty()) {
+                    PooledConnection pooled = idle.removeFirst();
+                    if (isValid(pooled)) {
+                        borrowCount++;
+                        return pooled;
+                    }
+                    discard(pooled);
+                }
+                if (size < maxSize) {
+                    size++;
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for a database connection (pool size " + maxSize + ")");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted waiting for a database connection", e);
+                }
+            }
+        }
+        PooledConnection pooled = open();
+        synchronized (this) {
+            borrowCount++;
+        }
+        return pooled;
+    }
+
+    // opens a connection for a slot the caller has already reserved, outside the lock
+    private PooledConnection open() throws SQLException {
+        try {
+            Connection connection = factory.open();
+            synchronized (this) {
+                physicalCount++;
+                return new PooledConnection(connection, generation,
+                        new StatementCache(connection, statementCacheSize, statementCacheHits, statementCacheMisses));
+            }
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                size--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        if (pooled.generation != generation) {
+            return false;
+        }
+        try {
+            return pooled.connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private synchronized void giveBack(PooledConnection pooled, boolean broken) {
+        if (broken || pooled.generation != generation) {
+            discard(pooled);
+        } else {
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.addFirst(pooled);
+        }
+        notifyAll();
+    }
+
+    // must hold the lock
+    private void discard(PooledConnection pooled) {
+        size--;
+        pooled.statements.clear();
+        closeQuietly(pooled.connection);
+    }
+
+    public synchronized void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && size > minSize) {
+            PooledConnection pooled = iterator.next();
+            if (pooled.lastUsed < cutoff) {
+                iterator.remove();
+                discard(pooled);
+            }
+        }
+    }
+
+    // closes every idle connection, connections currently in use are closed when they are returned
+    public synchronized void clear() {
+        generation++;
+        for (PooledConnection pooled : idle) {
+            discard(pooled);
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+    public synchronized long getPhysicalCount() {
+        return physicalCount;
+    }
+
+    public synchronized long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // ignore, the resource is being thrown away
+        }
+    }
+
+    private static boolean isClosedQuietly(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final int generation;
+        private final StatementCache statements;
+        private long lastUsed;
+
+        private PooledConnection(Connection connection, int generation, StatementCache statements) {
+            this.connection = connection;
+            this.generation = generation;
+            this.statements = statements;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final List<Statement> statements = new ArrayList<>();
+        private int pruneAt = PRUNE_STATEMENTS_AT;
+        private boolean closed = false;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.connection;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                Object result;
+                if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                    result = pooled.statements.prepare((String) args[0]);
+                } else {
+                    result = method.invoke(pooled.connection, args);
+                }
+                if (result instanceof Statement) {
+                    track((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // a unit of work holds one lease for the whole request, which may run a statement per row
+        private void track(Statement statement) {
+            if (statements.size() >= pruneAt) {
+                statements.removeIf(ConnectionPool::isClosedQuietly);
+                // still mostly open, wait for twice as many before looking again
+                pruneAt = Math.max(PRUNE_STATEMENTS_AT, statements.size() * 2);
+            }
+            statements.add(statement);
+        }
+
+        private void release() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // models don't always close their statements, so clean up after them
+            for (Statement statement : statements) {
+                closeQuietly(statement);
+            }
+            boolean broken = false;
+            try {
+                if (!pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                broken = true;
+            }
+            giveBack(pooled, broken);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.montana.csci.csci440.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+// a position in a keyset paged listing: the sort key values of the row a page starts after, or ends
+// before when paging backwards.  It goes out in links as an opaque URL safe token, so the next page is a
+// seek on the index rather than an OFFSET that reads and throws away every row in front of it.  It also
+// names the order it was taken in, so a token from a listing sorted one way is not applied to another
+public class Cursor {
+
+    private static final char SEPARATOR = '\u001f';
+
+    private final boolean backward;
+    private final String order;
+    private final List<Object> values;
+
+    private Cursor(boolean backward, String order, List<Object> values) {
+        this.backward = backward;
+        this.order = order;
+        this.values = values;
+    }
+
+    public static Cursor after(Object... values) {
+        return new Cursor(false, null, Collections.unmodifiableList(Arrays.asList(values)));
+    }
+
+    public static Cursor before(Object... values) {
+        return new Cursor(true, null, Collections.unmodifiableList(Arrays.asList(values)));
+    }
+
+    // the same position facing the other way
+    public Cursor reverse() {
+        return new Cursor(!backward, order, values);
+    }
+
+    // the same position, tagged with the order of the listing it belongs to
+    public Cursor in(String order) {
+        return new Cursor(backward, order, values);
+    }
+
+    // null for a cursor that was never tagged
+    public String getOrder() {
+        return order;
+    }
+
+    public boolean isBackward() {
+        return backward;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    // values are kept with their SQL storage class, so a cursor binds the same way the row was read
+    public String encode() {
+        StringBuilder token = new StringBuilder(backward ? "b" : "a");
+        if (order != null) {
+            token.append(order);
+        }
+        for (Object value : values) {
+            token.append(SEPARATOR);
+            if (value == null) {
+                token.append('n');
+            } else if (value instanceof Integer || value instanceof Long) {
+                token.append('i').append(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                token.append('r').append(((Number) value).doubleValue());
+            } else {
+                token.append('s').append(value);
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // null for a missing or mangled token, which callers treat as the first page
+    public static Cursor parse(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(String.valueOf(SEPARATOR), -1);
+            if (parts.length < 2 || !(parts[0].startsWith("a") || parts[0].startsWith("b"))) {
+                return null;
+            }
+            String order = parts[0].length() > 1 ? parts[0].substring(1) : null;
+            List<Object> values = new ArrayList<>();
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.isEmpty()) {
+                    return null;
+                }
+                String value = part.substring(1);
+                switch (part.charAt(0)) {
+                    case 'n':
+                        values.add(null);
+                        break;
+                    case 'i':
+                        values.add(Long.parseLong(value));
+                        break;
+                    case 'r':
+                        values.add(Double.parseDouble(value));
+                        break;
+                    case 's':
+                        values.add(value);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            return new Cursor(parts[0].startsWith("b"), order, Collections.unmodifiableList(values));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+    // a page that knows the cursors of the pages on either side, null where there is none
+    public interface Paged {
+        Cursor getPreviousCursor();
+
+        Cursor getNextCursor();
+    }
+}
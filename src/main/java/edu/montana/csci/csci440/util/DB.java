@@ -5,25 +5,220 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import org.sqlite.SQLiteConfig;
+
 import java.sql.*;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DB {
 
-    private static long CONNECTION_COUNT = 0;
+    private static final String URL = "jdbc:sqlite:db/chinook.db";
+
+    private static final Properties PROPERTIES = PragmaProfile.loadProperties();
+    private static final PragmaProfile PRAGMAS = PragmaProfile.fromProperties(PROPERTIES);
+
+    private static final ConnectionPool POOL = new ConnectionPool(DB::open,
+            intProperty("db.pool.min", 1),
+            intProperty("db.pool.max", 10),
+            intProperty("db.pool.idleTimeoutMillis", 60_000),
+            intProperty("db.pool.borrowTimeoutMillis", 30_000),
+            intProperty("db.statementCache.size", 64));
+
+    // opened with SQLITE_OPEN_READONLY, so under WAL these never contend with the writer
+    private static final ConnectionPool READ_POOL = new ConnectionPool(DB::openReadOnly,
+            intProperty("db.readPool.min", 1),
+            intProperty("db.readPool.max", Math.max(2, Runtime.getRuntime().availableProcessors() * 2)),
+            intProperty("db.pool.idleTimeoutMillis", 60_000),
+            intProperty("db.pool.borrowTimeoutMillis", 30_000),
+            intProperty("db.statementCache.size", 64));
+
+    // without WAL a reader's lock would block the writer, so reads then stay on the write path
+    private static final boolean READ_POOL_ENABLED =
+            "WAL".equalsIgnoreCase(PRAGMAS.getPragmas().get("journal_mode"));
+    private static volatile boolean journalModeApplied = false;
+    private static volatile boolean schemaMigrated = false;
+
+    // reference data that rarely changes is cached across requests by default, other models opt in through
+    // db.entityCache.<Model>.maxEntries
+    private static final String DEFAULT_CACHED_ENTITIES = "Album,Artist,Genre,MediaType";
+    private static final ConcurrentMap<String, EntityCache> ENTITY_CACHES = new ConcurrentHashMap<>();
+    private static final EntityCache NO_CACHE = new EntityCache("none", 0, 0);
+
+    private static final ThreadLocal<UnitOfWork> UNIT_OF_WORK = new ThreadLocal<>();
 
+    // totals across every thread, striped so concurrent requests don't contend on one cache line
+    private static final LongAdder CONNECTIONS = new LongAdder();
+    private static final LongAdder STATEMENTS_PREPARED = new LongAdder();
+    private static final LongAdder STATEMENTS_EXECUTED = new LongAdder();
+    private static final LongAdder ROWS_READ = new LongAdder();
+    private static final LongAdder JDBC_NANOS = new LongAdder();
+    // the same counts for just the current request, see beginCounting
+    private static final ThreadLocal<Counters> COUNTERS = new ThreadLocal<>();
+
+    private static final SlowQueries SLOW_QUERIES = new SlowQueries(
+            intProperty("db.slowQuery.thresholdMillis", 100),
+            intProperty("db.slowQuery.bufferSize", 100),
+            Boolean.parseBoolean(PROPERTIES.getProperty("db.slowQuery.showParameters", "false").trim()));
+
+    // borrows a pooled connection, closing it hands it back to the pool.  Inside a unit of work
+    // every call shares the unit's connection and transaction instead, which is read only for GET requests
     public static Connection connect() throws SQLException {
-        CONNECTION_COUNT++;
-        Connection connection = DriverManager.getConnection("jdbc:sqlite:db/chinook.db");
-        try (Statement statement = connection.createStatement();){
-            statement.execute("PRAGMA foreign_keys = ON");
-        };
+        countConnection();
+        UnitOfWork unitOfWork = UNIT_OF_WORK.get();
+        if (unitOfWork != null) {
+            return unitOfWork.connect();
+        }
+        return POOL.borrow();
+    }
+
+    // for INSERT, UPDATE and DELETE, always a writable connection even inside a read only unit of work
+    public static Connection connectForWrite() throws SQLException {
+        countConnection();
+        UnitOfWork unitOfWork = UNIT_OF_WORK.get();
+        if (unitOfWork != null) {
+            return unitOfWork.connectForWrite();
+        }
+        return POOL.borrow();
+    }
+
+    // opens db.pool.min write and db.readPool.min read connections ahead of the first request
+    public static void warmUp() {
+        try {
+            POOL.warmUp();
+            if (READ_POOL_ENABLED) {
+                READ_POOL.warmUp();
+            }
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+    }
+
+    public static UnitOfWork beginUnitOfWork() {
+        return beginUnitOfWork(false);
+    }
+
+    public static UnitOfWork beginUnitOfWork(boolean readOnly) {
+        UnitOfWork existing = UNIT_OF_WORK.get();
+        if (existing != null) {
+            existing.end();
+        }
+        UnitOfWork unitOfWork = new UnitOfWork(POOL, READ_POOL, readOnly && READ_POOL_ENABLED);
+        UNIT_OF_WORK.set(unitOfWork);
+        return unitOfWork;
+    }
+
+    public static UnitOfWork currentUnitOfWork() {
+        return UNIT_OF_WORK.get();
+    }
+
+    // rolls back anything uncommitted, releases the connection and unbinds the unit from this thread
+    public static UnitOfWork endUnitOfWork() {
+        UnitOfWork unitOfWork = UNIT_OF_WORK.get();
+        UNIT_OF_WORK.remove();
+        if (unitOfWork != null) {
+            unitOfWork.end();
+        }
+        return unitOfWork;
+    }
+
+    // per physical connection setup, runs once when the pool opens a connection
+    private static Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(URL);
+        try {
+            PRAGMAS.apply(connection);
+            migrate(connection);
+        } catch (SQLException sqlException) {
+            connection.close();
+            throw sqlException;
+        }
+        journalModeApplied = true;
+        return connection;
+    }
+
+    // the first connection to a database file applies any pending Schema migrations to it
+    private static void migrate(Connection connection) throws SQLException {
+        if (schemaMigrated) {
+            return;
+        }
+        synchronized (Schema.class) {
+            if (!schemaMigrated) {
+                Schema.migrate(connection);
+                schemaMigrated = true;
+            }
+        }
+    }
+
+    private static Connection openReadOnly() throws SQLException {
+        if (!journalModeApplied) {
+            // only a writer can switch the file to WAL, and only before any reader holds a lock on it
+            POOL.borrow().close();
+        }
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Connection connection = config.createConnection(URL);
+        try {
+            PRAGMAS.readOnly().apply(connection);
+        } catch (SQLException sqlException) {
+            connection.close();
+            throw sqlException;
+        }
         return connection;
     }
 
+    private static int intProperty(String name, int defaultValue) {
+        String value = PROPERTIES.getProperty(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    // the shared cache for a model type, or null when that type is not cached
+    public static EntityCache entityCache(Class<?> type) {
+        EntityCache cache = ENTITY_CACHES.computeIfAbsent(type.getSimpleName(), name -> {
+            boolean cachedByDefault = ("," + DEFAULT_CACHED_ENTITIES + ",").contains("," + name + ",");
+            int maxEntries = intProperty("db.entityCache." + name + ".maxEntries", cachedByDefault ? 1000 : 0);
+            if (maxEntries <= 0) {
+                return NO_CACHE;
+            }
+            return new EntityCache(name, maxEntries, intProperty("db.entityCache.ttlMillis", 300_000));
+        });
+        return cache == NO_CACHE ? null : cache;
+    }
+
+    public static List<EntityCache> getEntityCaches() {
+        List<EntityCache> caches = new LinkedList<>();
+        for (EntityCache cache : ENTITY_CACHES.values()) {
+            if (cache != NO_CACHE) {
+                caches.add(cache);
+            }
+        }
+        return caches;
+    }
+
+    public static PragmaProfile getPragmaProfile() {
+        return PRAGMAS;
+    }
+
     public static void reset() throws IOException {
+        // pooled connections would keep pointing at the replaced file
+        POOL.clear();
+        READ_POOL.clear();
+        journalModeApplied = false;
+        schemaMigrated = false;
+        for (EntityCache cache : ENTITY_CACHES.values()) {
+            cache.clear();
+        }
+        ModelVersions.bumpAll();
         Path dbPath = Paths.get("db/chinook.db");
         Path backupPath = Paths.get("db/backup/original.db");
         if (Files.exists(dbPath)) {
+            // a leftover write ahead log would be replayed against the restored file
+            Files.deleteIfExists(Paths.get("db/chinook.db-wal"));
+            Files.deleteIfExists(Paths.get("db/chinook.db-shm"));
             Files.copy(backupPath, dbPath, StandardCopyOption.REPLACE_EXISTING);
         } else {
             System.err.println("Could not find DB file!");
@@ -43,7 +238,134 @@ public class DB {
         }
     }
 
+    // counts everything this thread does against the database from now until endCounting, without
+    // picking up other threads' work the way a difference of the global totals would
+    public static Counters beginCounting() {
+        Counters counters = new Counters();
+        COUNTERS.set(counters);
+        return counters;
+    }
+
+    public static Counters endCounting() {
+        Counters counters = COUNTERS.get();
+        COUNTERS.remove();
+        return counters;
+    }
+
+    private static void countConnection() {
+        CONNECTIONS.increment();
+        Counters counters = COUNTERS.get();
+        if (counters != null) {
+            counters.connections++;
+        }
+    }
+
+    static void countPrepare() {
+        STATEMENTS_PREPARED.increment();
+        Counters counters = COUNTERS.get();
+        if (counters != null) {
+            counters.prepared++;
+        }
+    }
+
+    static void countExecute(long nanos) {
+        STATEMENTS_EXECUTED.increment();
+        JDBC_NANOS.add(nanos);
+        Counters counters = COUNTERS.get();
+        if (counters != null) {
+            counters.executed++;
+            counters.jdbcNanos += nanos;
+        }
+    }
+
+    // a ResultSet.next() call, SQLite steps the statement here so it counts as JDBC time too
+    static void countFetch(boolean row, long nanos) {
+        if (row) {
+            ROWS_READ.increment();
+        }
+        JDBC_NANOS.add(nanos);
+        Counters counters = COUNTERS.get();
+        if (counters != null) {
+            if (row) {
+                counters.rows++;
+            }
+            counters.jdbcNanos += nanos;
+        }
+    }
+
+    // one run of a statement, its execute call and the reads of its rows, finished
+    static void recordRun(String sql, long nanos, Map<Integer, Object> parameters, Connection connection) {
+        SLOW_QUERIES.record(sql, nanos, parameters, connection);
+    }
+
+    public static SlowQueries getSlowQueries() {
+        return SLOW_QUERIES;
+    }
+
+    // logical connections handed out by connect()
     public static long getConnectionCount() {
-        return CONNECTION_COUNT;
+        return CONNECTIONS.sum();
+    }
+
+    public static long getStatementsPrepared() {
+        return STATEMENTS_PREPARED.sum();
+    }
+
+    public static long getStatementsExecuted() {
+        return STATEMENTS_EXECUTED.sum();
+    }
+
+    public static long getRowsRead() {
+        return ROWS_READ.sum();
+    }
+
+    public static double getJdbcSeconds() {
+        return JDBC_NANOS.sum() / 1e9;
+    }
+
+    public static long getStatementCacheHits() {
+        return POOL.getStatementCacheHits() + READ_POOL.getStatementCacheHits();
+    }
+
+    public static long getStatementCacheMisses() {
+        return POOL.getStatementCacheMisses() + READ_POOL.getStatementCacheMisses();
+    }
+
+    // physical connections actually opened against the database file
+    public static long getPhysicalConnectionCount() {
+        return POOL.getPhysicalCount() + READ_POOL.getPhysicalCount();
+    }
+
+    // database work done by one thread, only ever touched by that thread
+    public static class Counters {
+        private long connections;
+        private long prepared;
+        private long executed;
+        private long rows;
+        private long jdbcNanos;
+
+        public long getConnections() {
+            return connections;
+        }
+
+        public long getStatementsPrepared() {
+            return prepared;
+        }
+
+        public long getStatementsExecuted() {
+            return executed;
+        }
+
+        public long getRowsRead() {
+            return rows;
+        }
+
+        public double getJdbcMillis() {
+            return jdbcNanos / 1e6;
+        }
+
+        long getJdbcNanos() {
+            return jdbcNanos;
+        }
     }
 }
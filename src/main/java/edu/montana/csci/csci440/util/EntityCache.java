@@ -0,0 +1,107 @@
+package edu.montana.csci.csci440.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// a process wide, size bounded LRU cache of rows by primary key for one model type.
+// Entries older than the ttl are treated as misses
+public class EntityCache {
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public EntityCache(String name, int maxEntries, long ttlMillis) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized Object get(Long id) {
+        Entry entry = entries.get(id);
+        if (entry != null && System.currentTimeMillis() - entry.cachedAt > ttlMillis) {
+            entries.remove(id);
+            evictions.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    public synchronized void put(Long id, Object value) {
+        entries.put(id, new Entry(value, System.currentTimeMillis()));
+    }
+
+    public synchronized void remove(Long id) {
+        entries.remove(id);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // entries dropped for size or age
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + " cache (" + size() + "/" + maxEntries + " entries, " + hits + " hits, "
+                + misses + " misses, " + evictions + " evictions)";
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long cachedAt;
+
+        private Entry(Object value, long cachedAt) {
+            this.value = value;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
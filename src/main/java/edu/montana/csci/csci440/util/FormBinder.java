@@ -0,0 +1,115 @@
+package edu.montana.csci.csci440.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// the setters of a model class, resolved once per class, that Web.putValuesInto uses to copy form
+// parameters onto a model.  Values are converted to the setter's parameter type
+public class FormBinder {
+
+    // parses the way the lenient SimpleDateFormat("dd/MM/yyyy") did: any number of digits in each field, the
+    // year taken literally ("21" is the year 21), out of range days and months rolled over ("31/02/2021" is
+    // the 3rd of March) and anything after the year ignored
+    private static final DateTimeFormatter DATE_FORMAT = new DateTimeFormatterBuilder()
+            .appendValue(ChronoField.DAY_OF_MONTH, 1, 9, SignStyle.NORMAL)
+            .appendLiteral('/')
+            .appendValue(ChronoField.MONTH_OF_YEAR, 1, 9, SignStyle.NORMAL)
+            .appendLiteral('/')
+            .appendValue(ChronoField.YEAR, 1, 9, SignStyle.NORMAL)
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.LENIENT);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<FormBinder> BINDERS = new ClassValue<FormBinder>() {
+        @Override
+        protected FormBinder computeValue(Class<?> type) {
+            return new FormBinder(type);
+        }
+    };
+
+    private final Map<String, Setter> setters = new HashMap<>();
+
+    private FormBinder(Class<?> clazz) {
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().startsWith("set") &&
+                    method.getParameterTypes().length == 1 &&
+                    !method.getParameterTypes()[0].getPackageName().startsWith("edu.montana")) {
+                setters.putIfAbsent(method.getName().substring(3), new Setter(method));
+            }
+        }
+    }
+
+    public static FormBinder forClass(Class<?> clazz) {
+        return BINDERS.get(clazz);
+    }
+
+    public void bind(Object obj, String property, String value) throws Throwable {
+        Setter setter = setters.get(property);
+        if (setter == null) {
+            throw new IllegalStateException("Unanable to find a method named set" + property);
+        }
+        setter.handle.invokeExact(obj, setter.converter.apply(value));
+    }
+
+    private static class Setter {
+        private final MethodHandle handle;
+        private final Function<String, Object> converter;
+
+        private Setter(Method method) {
+            try {
+                handle = MethodHandles.publicLookup().unreflect(method).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            converter = converterFor(method.getParameterTypes()[0]);
+        }
+    }
+
+    private static Function<String, Object> converterFor(Class<?> type) {
+        if (type == Integer.class || type == Integer.TYPE) {
+            return Integer::parseInt;
+        } else if (type == Long.class || type == Long.TYPE) {
+            return Long::parseLong;
+        } else if (type == Date.class) {
+            return FormBinder::parseDate;
+        } else if (type == String.class) {
+            return value -> value;
+        } else if (type == BigDecimal.class) {
+            return FormBinder::parseBigDecimal;
+        } else {
+            return value -> {
+                throw new IllegalStateException("Do not know how to set value of type " + type.getName());
+            };
+        }
+    }
+
+    private static Date parseDate(String value) {
+        LocalDate date = LocalDate.from(DATE_FORMAT.parse(value, new ParsePosition(0)));
+        // through the calendar rather than an Instant, so years before 1582 land on the Julian date it named
+        return new GregorianCalendar(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth()).getTime();
+    }
+
+    private static BigDecimal parseBigDecimal(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (Exception e) {
+            // formatting exception, return null
+            return null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package edu.montana.csci.csci440.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// gzip for response bodies on top of a pool of Deflaters, so compressing a page does not allocate and
+// later free the deflater's native buffers on every request.  Bodies under -Dcompression.minBytes are
+// sent as they are, a few hundred bytes gain little and the header and trailer can make them larger
+public class Gzip {
+
+    public static final int MIN_BYTES = Integer.getInteger("compression.minBytes", 1024);
+    private static final int LEVEL = Integer.getInteger("compression.level", Deflater.DEFAULT_COMPRESSION);
+    private static final BlockingQueue<Deflater> POOL = new ArrayBlockingQueue<>(32);
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // whether an Accept-Encoding header allows a gzip response, a q value of 0 rules it out
+    public static boolean accepts(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip")) {
+                return quality(parts) > 0;
+            } else if (name.equals("*")) {
+                wildcard = quality(parts);
+            }
+        }
+        return wildcard != null && wildcard > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    // a malformed weight, treat it like a missing one
+                }
+            }
+        }
+        return 1;
+    }
+
+    public static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GzipOutputStream gzip = new GzipOutputStream(out)) {
+            gzip.write(data, 0, data.length);
+        }
+        return out.toByteArray();
+    }
+
+    // closing the returned stream finishes the gzip member and returns the deflater, the underlying
+    // stream is flushed but left open
+    public static GzipOutputStream stream(OutputStream out) throws IOException {
+        return new GzipOutputStream(out);
+    }
+
+    // for a body whose length is not known up front: the first MIN_BYTES are held back, a body that ends
+    // before then is written as it is and a longer one is gzipped.  onCompress runs just before the first
+    // compressed byte, while the caller can still set Content-Encoding
+    public static DeferredOutputStream deferred(OutputStream out, Runnable onCompress) {
+        return new DeferredOutputStream(out, onCompress);
+    }
+
+    private static Deflater borrow() {
+        Deflater deflater = POOL.poll();
+        return deflater != null ? deflater : new Deflater(LEVEL, true);
+    }
+
+    private static void release(Deflater deflater) {
+        deflater.reset();
+        if (!POOL.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    public static class GzipOutputStream extends FilterOutputStream {
+        private final byte[] buffer = new byte[8192];
+        private final CRC32 crc = new CRC32();
+        private Deflater deflater;
+        private long read = 0;
+        private long written = 0;
+
+        private GzipOutputStream(OutputStream out) throws IOException {
+            super(out);
+            this.deflater = borrow();
+            out.write(HEADER);
+            written += HEADER.length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (deflater == null) {
+                throw new IOException("Stream has been closed");
+            }
+            crc.update(b, off, len);
+            read += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        private void deflate() throws IOException {
+            int length = deflater.deflate(buffer, 0, buffer.length);
+            if (length > 0) {
+                out.write(buffer, 0, length);
+                written += length;
+            }
+        }
+
+        public long getUncompressedBytes() {
+            return read;
+        }
+
+        // compressed bytes written so far, including the header
+        public long getCompressedBytes() {
+            return written;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                writeInt((int) crc.getValue());
+                writeInt((int) read);
+                out.flush();
+            } finally {
+                release(deflater);
+                deflater = null;
+            }
+        }
+
+        // gives the deflater back without finishing the member, so a client reading it sees a broken stream
+        // rather than a page that ends cleanly part way through
+        public void abort() {
+            if (deflater != null) {
+                release(deflater);
+                deflater = null;
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+            written += 4;
+        }
+    }
+
+    public static class DeferredOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Runnable onCompress;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream(Math.max(MIN_BYTES, 0));
+        private OutputStream target;
+        private GzipOutputStream gzip;
+        private long read = 0;
+
+        private DeferredOutputStream(OutputStream out, Runnable onCompress) {
+            this.out = out;
+            this.onCompress = onCompress;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                if (pending == null) {
+                    throw new IOException("Stream has been closed");
+                }
+                if (pending.size() + len < MIN_BYTES) {
+                    pending.write(b, off, len);
+                    read += len;
+                    return;
+                }
+                onCompress.run();
+                gzip = new GzipOutputStream(out);
+                pending.writeTo(gzip);
+                pending = null;
+                target = gzip;
+            }
+            target.write(b, off, len);
+            read += len;
+        }
+
+        // a body still being held back stays held back, it is only sent once it is long enough or complete
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        // sends what was held back as it is, or finishes the gzip member.  The underlying stream is flushed
+        // but left open
+        @Override
+        public void close() throws IOException {
+            if (gzip != null) {
+                gzip.close();
+            } else if (pending != null) {
+                pending.writeTo(out);
+                pending = null;
+                out.flush();
+            }
+        }
+
+        // drops what was held back and leaves a gzip member unfinished, see GzipOutputStream.abort
+        public void abort() {
+            pending = null;
+            if (gzip != null) {
+                gzip.abort();
+            }
+        }
+
+        public boolean isCompressed() {
+            return gzip != null;
+        }
+
+        public long getUncompressedBytes() {
+            return read;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package edu.montana.csci.csci440.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// the models already materialized during one unit of work, keyed by type and primary key
+public class IdentityMap {
+
+    private final Map<Class<?>, Map<Long, Object>> models = new HashMap<>();
+    private long hits = 0;
+
+    public <T> T get(Class<T> type, Long id) {
+        Map<Long, Object> byId = models.get(type);
+        Object model = byId == null ? null : byId.get(id);
+        if (model != null) {
+            hits++;
+        }
+        return type.cast(model);
+    }
+
+    public void put(Class<?> type, Long id, Object model) {
+        models.computeIfAbsent(type, k -> new HashMap<>()).put(id, model);
+    }
+
+    public void remove(Class<?> type, Long id) {
+        Map<Long, Object> byId = models.get(type);
+        if (byId != null) {
+            byId.remove(id);
+        }
+    }
+
+    public void clear() {
+        models.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<Long, Object> byId : models.values()) {
+            size += byId.size();
+        }
+        return size;
+    }
+
+    // finds answered from the map instead of the database
+    public long getHits() {
+        return hits;
+    }
+}
@@ -0,0 +1,85 @@
+package edu.montana.csci.csci440.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// request logging off the request threads: lines are queued and a daemon thread writes them to stdout,
+// so a slow terminal never holds up a response.  When the queue is full lines are dropped and counted
+// rather than waited on
+public class Log {
+
+    private static final int CAPACITY = Integer.getInteger("log.queueSize", 10_000);
+    private static final BlockingQueue<String> QUEUE = new ArrayBlockingQueue<>(CAPACITY);
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final PrintStream OUT = System.out;
+
+    static {
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static void info(String line) {
+        if (!QUEUE.offer(line)) {
+            DROPPED.increment();
+        }
+    }
+
+    // a structured line of key=value pairs, values with spaces or quotes are quoted
+    public static void event(String event, Object... keyValues) {
+        StringBuilder line = new StringBuilder("event=").append(event);
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            line.append(' ').append(keyValues[i]).append('=').append(quote(keyValues[i + 1]));
+        }
+        info(line.toString());
+    }
+
+    static String quote(Object value) {
+        String str = String.valueOf(value);
+        if (str.isEmpty() || str.indexOf(' ') >= 0 || str.indexOf('"') >= 0 || str.indexOf('=') >= 0) {
+            return '"' + str.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+        }
+        return str;
+    }
+
+    public static long getDropped() {
+        return DROPPED.sum();
+    }
+
+    // waits until everything queued so far has been written, for tests and shutdown
+    public static void flush() throws InterruptedException {
+        while (!QUEUE.isEmpty()) {
+            Thread.sleep(5);
+        }
+        synchronized (OUT) {
+            OUT.flush();
+        }
+    }
+
+    private static void drain() {
+        List<String> batch = new ArrayList<>();
+        while (true) {
+            try {
+                String first = QUEUE.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                QUEUE.drainTo(batch, 256);
+                synchronized (OUT) {
+                    for (String line : batch) {
+                        OUT.println(line);
+                    }
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package edu.montana.csci.csci440.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// per route request latency, SQL and template time and error counts, served in the Prometheus text
+// format on /metrics.  Rendering done on a request thread is also totalled for that request, the SQL side
+// comes from the request's DB.Counters
+public class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    // each route keeps a latency histogram, so a path that slips past routeFor must not add one per request
+    private static final int MAX_ROUTES = 200;
+    private static final String OTHER_ROUTE = "(other)";
+
+    private static final ConcurrentMap<String, RouteMetrics> ROUTES = new ConcurrentHashMap<>();
+    private static final LongAdder RENDER_NANOS = new LongAdder();
+    private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<>();
+
+    public static RequestMetrics beginRequest() {
+        RequestMetrics request = new RequestMetrics();
+        CURRENT.set(request);
+        return request;
+    }
+
+    public static RequestMetrics endRequest() {
+        RequestMetrics request = CURRENT.get();
+        CURRENT.remove();
+        return request;
+    }
+
+    public static void recordRender(long nanos) {
+        RENDER_NANOS.add(nanos);
+        RequestMetrics request = CURRENT.get();
+        if (request != null) {
+            request.renderNanos += nanos;
+        }
+    }
+
+    // the request's SQL work comes from the DB counters kept for it, either may be null
+    public static void recordRequest(String route, int status, long nanos, RequestMetrics request, DB.Counters db) {
+        RouteMetrics metrics = ROUTES.get(route);
+        if (metrics == null) {
+            metrics = ROUTES.computeIfAbsent(ROUTES.size() < MAX_ROUTES ? route : OTHER_ROUTE, RouteMetrics::new);
+        }
+        metrics.latencyMicros.record(nanos / 1_000);
+        if (status >= 500) {
+            metrics.errors.increment();
+        }
+        if (request != null) {
+            metrics.renderNanos.add(request.renderNanos);
+        }
+        if (db != null) {
+            metrics.queries.add(db.getStatementsExecuted());
+            metrics.rows.add(db.getRowsRead());
+            metrics.queryNanos.add(db.getJdbcNanos());
+        }
+    }
+
+    // the route a path belongs to with numeric ids replaced, so /albums/12/edit and /albums/7/edit are
+    // counted together.  Unmatched paths share one label to keep the number of series bounded, and so do
+    // failures on paths no request has succeeded on yet, like /albums/abc, which only match a route's pattern
+    public static String routeFor(String method, String path, int status) {
+        if (status == 404) {
+            return method + " (unmatched)";
+        }
+        String route = method + " " + path.replaceAll("/\\d+(?=/|$)", "/:id");
+        if (status >= 400 && !ROUTES.containsKey(route)) {
+            return method + " (failed)";
+        }
+        return route;
+    }
+
+    public static void clear() {
+        ROUTES.clear();
+    }
+
+    public static Map<String, RouteMetrics> getRoutes() {
+        return new TreeMap<>(ROUTES);
+    }
+
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder();
+        Map<String, RouteMetrics> routes = getRoutes();
+
+        header(out, "csci440_http_request_duration_seconds", "summary", "Request latency by route.");
+        for (RouteMetrics route : routes.values()) {
+            for (double quantile : QUANTILES) {
+                sample(out, "csci440_http_request_duration_seconds", route.name, "quantile=\"" + quantile + "\"",
+                        route.latencyMicros.percentile(quantile) / 1e6);
+            }
+            sample(out, "csci440_http_request_duration_seconds_sum", route.name, null, route.latencyMicros.getSum() / 1e6);
+            sample(out, "csci440_http_request_duration_seconds_count", route.name, null, route.latencyMicros.getCount());
+        }
+        header(out, "csci440_http_request_errors_total", "counter", "Requests that ended in a 5xx response.");
+        for (RouteMetrics route : routes.values()) {
+            sample(out, "csci440_http_request_errors_total", route.name, null, route.errors.sum());
+        }
+        header(out, "csci440_request_sql_queries_total", "counter", "SQL statements executed, by route.");
+        for (RouteMetrics route : routes.values()) {
+            sample(out, "csci440_request_sql_queries_total", route.name, null, route.queries.sum());
+        }
+        header(out, "csci440_request_sql_rows_total", "counter", "Rows read, by route.");
+        for (RouteMetrics route : routes.values()) {
+            sample(out, "csci440_request_sql_rows_total", route.name, null, route.rows.sum());
+        }
+        header(out, "csci440_request_sql_seconds_total", "counter", "Time spent in JDBC, by route.");
+        for (RouteMetrics route : routes.values()) {
+            sample(out, "csci440_request_sql_seconds_total", route.name, null, route.queryNanos.sum() / 1e9);
+        }
+        header(out, "csci440_request_render_seconds_total", "counter", "Time spent rendering templates, by route.");
+        for (RouteMetrics route : routes.values()) {
+            sample(out, "csci440_request_render_seconds_total", route.name, null, route.renderNanos.sum() / 1e9);
+        }
+
+        header(out, "csci440_sql_statements_prepared_total", "counter", "SQL statements prepared.");
+        sample(out, "csci440_sql_statements_prepared_total", null, null, DB.getStatementsPrepared());
+        header(out, "csci440_sql_queries_total", "counter", "SQL statements executed.");
+        sample(out, "csci440_sql_queries_total", null, null, DB.getStatementsExecuted());
+        header(out, "csci440_sql_rows_total", "counter", "Rows read from result sets.");
+        sample(out, "csci440_sql_rows_total", null, null, DB.getRowsRead());
+        header(out, "csci440_sql_seconds_total", "counter", "Time spent in JDBC.");
+        sample(out, "csci440_sql_seconds_total", null, null, DB.getJdbcSeconds());
+
+        header(out, "csci440_template_renders_total", "counter", "Template renders by template.");
+        for (Templates.RenderTiming timing : Templates.getTimings().values()) {
+            label(out, "csci440_template_renders_total", "template", timing.getName(), timing.getCount());
+        }
+        header(out, "csci440_template_render_seconds_total", "counter", "Time spent rendering by template.");
+        for (Templates.RenderTiming timing : Templates.getTimings().values()) {
+            label(out, "csci440_template_render_seconds_total", "template", timing.getName(), timing.getTotalMillis() / 1e3);
+        }
+
+        header(out, "csci440_db_connections_total", "counter", "Logical database connections handed out.");
+        sample(out, "csci440_db_connections_total", null, null, DB.getConnectionCount());
+        header(out, "csci440_db_physical_connections_total", "counter", "Physical database connections opened.");
+        sample(out, "csci440_db_physical_connections_total", null, null, DB.getPhysicalConnectionCount());
+        header(out, "csci440_page_cache_hits_total", "counter", "Listing pages served from the page cache.");
+        sample(out, "csci440_page_cache_hits_total", null, null, PageCache.getHits());
+        header(out, "csci440_page_cache_misses_total", "counter", "Listing pages that had to be rendered.");
+        sample(out, "csci440_page_cache_misses_total", null, null, PageCache.getMisses());
+        header(out, "csci440_log_dropped_total", "counter", "Log lines dropped because the log queue was full.");
+        sample(out, "csci440_log_dropped_total", null, null, Log.getDropped());
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String route, String extraLabel, double value) {
+        out.append(name);
+        if (route != null || extraLabel != null) {
+            out.append('{');
+            if (route != null) {
+                out.append("route=\"").append(escape(route)).append('"');
+            }
+            if (extraLabel != null) {
+                out.append(route != null ? "," : "").append(extraLabel);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static void label(StringBuilder out, String name, String label, String value, double sample) {
+        out.append(name).append('{').append(label).append("=\"").append(escape(value)).append("\"} ")
+                .append(format(sample)).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // what the current request has spent so far, only touched by the request's own thread
+    public static class RequestMetrics {
+        private long renderNanos;
+
+        public double getRenderMillis() {
+            return renderNanos / 1e6;
+        }
+    }
+
+    public static class RouteMetrics {
+        private final String name;
+        private final Histogram latencyMicros = new Histogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder queryNanos = new LongAdder();
+        private final LongAdder renderNanos = new LongAdder();
+
+        private RouteMetrics(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return latencyMicros.getCount();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public double getPercentileMillis(double fraction) {
+            return latencyMicros.percentile(fraction) / 1e3;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package edu.montana.csci.csci440.util;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// a counter per model type that every write through the app bumps, so anything derived from a
+// model's rows can tell whether it is out of date by comparing the version it was built at.  Each bump
+// stamps the type with the next number of one sequence shared by all types, so a single number taken
+// before a read also tells which types were written after it
+public class ModelVersions {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final ConcurrentMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+    private static final List<Consumer<Class<?>>> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final List<Runnable> BUMP_ALL_LISTENERS = new CopyOnWriteArrayList<>();
+
+    public static long get(Class<?> model) {
+        return counter(model).get();
+    }
+
+    // the stamp of the latest bump to any type
+    public static long current() {
+        return SEQUENCE.get();
+    }
+
+    // whether model was written after current() returned since
+    public static boolean changedSince(Class<?> model, long since) {
+        return get(model) > since;
+    }
+
+    public static void bump(Class<?> model) {
+        stamp(counter(model), SEQUENCE.incrementAndGet());
+        for (Consumer<Class<?>> listener : LISTENERS) {
+            listener.accept(model);
+        }
+    }
+
+    // for caches that keep their own copy of the versions, like a shared tier in Redis
+    public static void onBump(Consumer<Class<?>> listener) {
+        LISTENERS.add(listener);
+    }
+
+    // for changes made underneath the models, like restoring the database
+    public static void bumpAll() {
+        long stamp = SEQUENCE.incrementAndGet();
+        for (AtomicLong version : VERSIONS.values()) {
+            stamp(version, stamp);
+        }
+        for (Runnable listener : BUMP_ALL_LISTENERS) {
+            listener.run();
+        }
+    }
+
+    // for copies of model data that cannot be brought up to date one write at a time after bumpAll
+    public static void onBumpAll(Runnable listener) {
+        BUMP_ALL_LISTENERS.add(listener);
+    }
+
+    // concurrent bumps may finish out of order, a version never goes back
+    private static void stamp(AtomicLong version, long stamp) {
+        version.accumulateAndGet(stamp, Math::max);
+    }
+
+    private static AtomicLong counter(Class<?> model) {
+        return VERSIONS.computeIfAbsent(model.getSimpleName(), name -> new AtomicLong());
+    }
+}
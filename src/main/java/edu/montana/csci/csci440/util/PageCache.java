@@ -0,0 +1,272 @@
+package edu.montana.csci.csci440.util;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import spark.Request;
+
+import javax.servlet.http.HttpSession;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// rendered pages for listing routes that look the same to every user, keyed by path and query string.
+// Each route is tagged with the models its page is built from, and a page is only served while none of
+// those models have been written since it was rendered.  Pages live in a size capped LRU in this process,
+// with -DpageCache.redis=true they are also shared with other instances through Redis
+public class PageCache {
+
+    private static final long MAX_BYTES = Long.getLong("pageCache.maxBytes", 32 * 1024 * 1024);
+    private static final long MAX_PAGE_BYTES = MAX_BYTES / 8;
+    private static final boolean REDIS = Boolean.getBoolean("pageCache.redis");
+    private static final int REDIS_TTL_SECONDS = Integer.getInteger("pageCache.redisTtlSeconds", 600);
+    private static final String REDIS_PAGE_PREFIX = "cs440-page:";
+    private static final String REDIS_TAG_PREFIX = "cs440-page-tag:";
+    // redis is only a second tier, so a slow or missing server costs a request at most this long, after
+    // which it is left alone for the backoff instead of every request waiting out the same timeout
+    private static final int REDIS_TIMEOUT_MILLIS = Integer.getInteger("pageCache.redisTimeoutMillis", 50);
+    private static final long REDIS_BACKOFF_MILLIS = Long.getLong("pageCache.redisBackoffMillis", 10_000);
+    private static final JedisPool REDIS_POOL = REDIS ? createPool() : null;
+    private static volatile long redisRetryAt = 0;
+
+    private static final List<Route> ROUTES = new CopyOnWriteArrayList<>();
+    private static final LinkedHashMap<String, Page> PAGES = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytes = 0;
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    static {
+        if (REDIS) {
+            // other instances compare against the shared tag counters, so every local write bumps them too
+            ModelVersions.onBump(PageCache::bumpRedisTag);
+            // the redis tags are the only versions read in this mode, so a reset has to move them all
+            ModelVersions.onBumpAll(PageCache::bumpRedisTags);
+        }
+    }
+
+    public static void register(String path, Class<?>... models) {
+        ROUTES.add(new Route(path, models));
+    }
+
+    // the cache slot for this request, or null when the request is not cacheable.  The tag versions are
+    // read here, before the page renders, so a write during rendering leaves the stored page already stale
+    static Lookup lookup(Request request) {
+        if (!"GET".equals(request.requestMethod()) || hasFlash(request)) {
+            return null;
+        }
+        for (Route route : ROUTES) {
+            if (route.path.equals(request.pathInfo())) {
+                String query = request.queryString();
+                return lookup(query == null ? route.path : route.path + "?" + query, route.models);
+            }
+        }
+        return null;
+    }
+
+    static Lookup lookup(String key, Class<?>... models) {
+        Lookup lookup = new Lookup(key, tagVersions(models));
+        lookup.body = find(lookup);
+        if (lookup.body == null) {
+            MISSES.incrementAndGet();
+        } else {
+            HITS.incrementAndGet();
+        }
+        return lookup;
+    }
+
+    private static String find(Lookup lookup) {
+        synchronized (PAGES) {
+            Page page = PAGES.get(lookup.key);
+            if (page != null && page.versions.equals(lookup.versions)) {
+                return page.body;
+            }
+        }
+        String value = redis(redis -> redis.get(REDIS_PAGE_PREFIX + lookup.key));
+        if (value != null && value.startsWith(lookup.versions + "\n")) {
+            String body = value.substring(lookup.versions.length() + 1);
+            putLocal(lookup, body, body.getBytes(StandardCharsets.UTF_8).length);
+            return body;
+        }
+        return null;
+    }
+
+    static void store(Lookup lookup, String body) {
+        long size = body.getBytes(StandardCharsets.UTF_8).length;
+        if (size > MAX_PAGE_BYTES) {
+            return;
+        }
+        putLocal(lookup, body, size);
+        redis(redis -> redis.setex(REDIS_PAGE_PREFIX + lookup.key, REDIS_TTL_SECONDS, lookup.versions + "\n" + body));
+    }
+
+    private static void putLocal(Lookup lookup, String body, long size) {
+        if (size > MAX_PAGE_BYTES) {
+            return;
+        }
+        synchronized (PAGES) {
+            Page previous = PAGES.put(lookup.key, new Page(lookup.versions, body, size));
+            if (previous != null) {
+                bytes -= previous.size;
+            }
+            bytes += size;
+            Iterator<Page> eldest = PAGES.values().iterator();
+            while (bytes > MAX_BYTES && eldest.hasNext()) {
+                bytes -= eldest.next().size;
+                eldest.remove();
+                EVICTIONS.incrementAndGet();
+            }
+        }
+    }
+
+    private static String tagVersions(Class<?>[] models) {
+        String[] keys = new String[models.length];
+        for (int i = 0; i < models.length; i++) {
+            keys[i] = REDIS_TAG_PREFIX + models[i].getSimpleName();
+        }
+        List<String> shared = redis(redis -> redis.mget(keys));
+        if (shared != null) {
+            return "r" + shared;
+        }
+        // without redis only this instance's writes are seen, which is what the local tier relies on
+        long[] versions = new long[models.length];
+        for (int i = 0; i < models.length; i++) {
+            versions[i] = ModelVersions.get(models[i]);
+        }
+        return Arrays.toString(versions);
+    }
+
+    private static void bumpRedisTag(Class<?> model) {
+        // if this is lost, pages cached in redis still expire on their own
+        redis(redis -> redis.incr(REDIS_TAG_PREFIX + model.getSimpleName()));
+    }
+
+    // every tag a registered route is checked against
+    private static void bumpRedisTags() {
+        Set<String> tags = new LinkedHashSet<>();
+        for (Route route : ROUTES) {
+            for (Class<?> model : route.models) {
+                tags.add(REDIS_TAG_PREFIX + model.getSimpleName());
+            }
+        }
+        redis(redis -> {
+            Pipeline pipeline = redis.pipelined();
+            for (String tag : tags) {
+                pipeline.incr(tag);
+            }
+            pipeline.sync();
+            return tags;
+        });
+    }
+
+    // runs the call on a pooled connection, null when redis is off, backing off, or the call fails
+    private static <T> T redis(Function<Jedis, T> call) {
+        if (!REDIS || System.currentTimeMillis() < redisRetryAt) {
+            return null;
+        }
+        try (Jedis redis = REDIS_POOL.getResource()) {
+            return call.apply(redis);
+        } catch (RuntimeException e) {
+            redisRetryAt = System.currentTimeMillis() + REDIS_BACKOFF_MILLIS;
+            Log.event("redis_unavailable", "message", e.getMessage(), "retry_ms", REDIS_BACKOFF_MILLIS);
+            return null;
+        }
+    }
+
+    private static JedisPool createPool() {
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMaxTotal(Integer.getInteger("pageCache.redisConnections", 16));
+        config.setMaxWaitMillis(REDIS_TIMEOUT_MILLIS);
+        return new JedisPool(config, System.getProperty("pageCache.redisHost", "localhost"),
+                Integer.getInteger("pageCache.redisPort", 6379), REDIS_TIMEOUT_MILLIS);
+    }
+
+    // the page on the screen also shows the flash message, which is only shown once
+    private static boolean hasFlash(Request request) {
+        HttpSession session = request.raw().getSession(false);
+        return session != null && (session.getAttribute(":message") != null || session.getAttribute(":error") != null);
+    }
+
+    public static void clear() {
+        synchronized (PAGES) {
+            PAGES.clear();
+            bytes = 0;
+        }
+    }
+
+    public static int size() {
+        synchronized (PAGES) {
+            return PAGES.size();
+        }
+    }
+
+    public static long getBytes() {
+        synchronized (PAGES) {
+            return bytes;
+        }
+    }
+
+    // the largest page kept, anything bigger is rendered every time
+    static long getMaxPageBytes() {
+        return MAX_PAGE_BYTES;
+    }
+
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    public static long getEvictions() {
+        return EVICTIONS.get();
+    }
+
+    static class Lookup {
+        private final String key;
+        private final String versions;
+        private String body;
+
+        private Lookup(String key, String versions) {
+            this.key = key;
+            this.versions = versions;
+        }
+
+        // the cached page, or null if it has to be rendered
+        String getBody() {
+            return body;
+        }
+    }
+
+    private static class Route {
+        private final String path;
+        private final Class<?>[] models;
+
+        private Route(String path, Class<?>[] models) {
+            this.path = path;
+            this.models = models;
+        }
+    }
+
+    private static class Page {
+        private final String versions;
+        private final String body;
+        private final long size;
+
+        private Page(String versions, String body, long size) {
+            this.versions = versions;
+            this.body = body;
+            this.size = size;
+        }
+    }
+}
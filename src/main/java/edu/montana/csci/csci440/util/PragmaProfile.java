@@ -0,0 +1,129 @@
+package edu.montana.csci.csci440.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+// the set of PRAGMAs run against every new physical connection
+public class PragmaProfile {
+
+    public static final String WEB = "web";
+    public static final String BULK_LOAD = "bulk-load";
+
+    private static final Pattern VALID_NAME = Pattern.compile("[a-z_]+");
+    private static final Pattern VALID_VALUE = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final String name;
+    private final Map<String, String> pragmas;
+
+    public PragmaProfile(String name, Map<String, String> pragmas) {
+        for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+            if (!VALID_NAME.matcher(pragma.getKey()).matches() || !VALID_VALUE.matcher(pragma.getValue()).matches()) {
+                throw new IllegalArgumentException("Invalid pragma " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+        this.name = name;
+        this.pragmas = Collections.unmodifiableMap(new LinkedHashMap<>(pragmas));
+    }
+
+    // read heavy web traffic: WAL lets readers run alongside the writer, and NORMAL sync is safe in WAL mode
+    public static PragmaProfile web() {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        pragmas.put("busy_timeout", "5000");
+        pragmas.put("journal_mode", "WAL");
+        pragmas.put("synchronous", "NORMAL");
+        pragmas.put("foreign_keys", "ON");
+        pragmas.put("cache_size", "-16000");
+        pragmas.put("mmap_size", "268435456");
+        pragmas.put("temp_store", "MEMORY");
+        return new PragmaProfile(WEB, pragmas);
+    }
+
+    // bulk loading: trades durability for throughput, a crash mid load can corrupt the database
+    public static PragmaProfile bulkLoad() {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        pragmas.put("busy_timeout", "30000");
+        pragmas.put("journal_mode", "MEMORY");
+        pragmas.put("synchronous", "OFF");
+        pragmas.put("foreign_keys", "ON");
+        pragmas.put("cache_size", "-262144");
+        pragmas.put("temp_store", "MEMORY");
+        return new PragmaProfile(BULK_LOAD, pragmas);
+    }
+
+    public static PragmaProfile forName(String name) {
+        if (WEB.equals(name)) {
+            return web();
+        } else if (BULK_LOAD.equals(name)) {
+            return bulkLoad();
+        } else {
+            throw new IllegalArgumentException("Unknown pragma profile " + name);
+        }
+    }
+
+    // picks the preset named by db.profile, then applies any db.pragma.<name> overrides
+    public static PragmaProfile fromProperties(Properties properties) {
+        PragmaProfile preset = forName(properties.getProperty("db.profile", WEB));
+        Map<String, String> pragmas = new LinkedHashMap<>(preset.pragmas);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("db.pragma.")) {
+                pragmas.put(key.substring("db.pragma.".length()), properties.getProperty(key).trim());
+            }
+        }
+        return new PragmaProfile(preset.name, pragmas);
+    }
+
+    // db.properties from the classpath, then db/db.properties, then system properties
+    public static Properties loadProperties() {
+        Properties properties = new Properties();
+        try (InputStream in = PragmaProfile.class.getResourceAsStream("/db.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+            Path local = Paths.get("db/db.properties");
+            if (Files.exists(local)) {
+                try (InputStream localIn = Files.newInputStream(local)) {
+                    properties.load(localIn);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        properties.putAll(System.getProperties());
+        return properties;
+    }
+
+    // the same settings for a read only connection, which cannot change the journal mode and should refuse writes
+    public PragmaProfile readOnly() {
+        Map<String, String> readOnlyPragmas = new LinkedHashMap<>(pragmas);
+        readOnlyPragmas.remove("journal_mode");
+        readOnlyPragmas.put("query_only", "ON");
+        return new PragmaProfile(name, readOnlyPragmas);
+    }
+
+    public void apply(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                statement.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getPragmas() {
+        return pragmas;
+    }
+}
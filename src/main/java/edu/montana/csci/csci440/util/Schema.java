@@ -0,0 +1,120 @@
+package edu.montana.csci.csci440.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// schema changes the app needs on top of the stock Chinook database.  Each migration runs once, in its
+// own transaction, and PRAGMA user_version records how many have been applied, so a freshly restored
+// database file is brought up to date the first time the pool opens a connection to it
+public class Schema {
+
+    private static final String TRACKS_FTS_RANK = "INSERT INTO tracks_fts(tracks_fts, rank) VALUES ('rank', 'bm25(10.0, 4.0, 4.0)')";
+    private static final String TRACKS_FTS_FILL = "INSERT INTO tracks_fts(rowid, Name, AlbumTitle, ArtistName) " +
+            "SELECT tracks.TrackId, tracks.Name, albums.Title, artists.Name FROM tracks " +
+            "LEFT JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+            "LEFT JOIN artists ON albums.ArtistId = artists.ArtistId";
+
+    private static final List<String[]> MIGRATIONS = List.<String[]>of(
+            // 1: full text index over track, album and artist names for Track.search, kept in sync by triggers.
+            // Names are weighted over album titles and artist names when ranking
+            new String[]{
+                    tracksFts("2 3"),
+                    TRACKS_FTS_RANK,
+                    TRACKS_FTS_FILL,
+                    "CREATE TRIGGER tracks_fts_insert AFTER INSERT ON tracks BEGIN " +
+                            "INSERT INTO tracks_fts(rowid, Name, AlbumTitle, ArtistName) " +
+                            "SELECT new.TrackId, new.Name, albums.Title, artists.Name FROM (SELECT 1) " +
+                            "LEFT JOIN albums ON albums.AlbumId = new.AlbumId " +
+                            "LEFT JOIN artists ON artists.ArtistId = albums.ArtistId; END",
+                    "CREATE TRIGGER tracks_fts_update AFTER UPDATE OF Name, AlbumId ON tracks BEGIN " +
+                            "DELETE FROM tracks_fts WHERE rowid = old.TrackId; " +
+                            "INSERT INTO tracks_fts(rowid, Name, AlbumTitle, ArtistName) " +
+                            "SELECT new.TrackId, new.Name, albums.Title, artists.Name FROM (SELECT 1) " +
+                            "LEFT JOIN albums ON albums.AlbumId = new.AlbumId " +
+                            "LEFT JOIN artists ON artists.ArtistId = albums.ArtistId; END",
+                    "CREATE TRIGGER tracks_fts_delete AFTER DELETE ON tracks BEGIN " +
+                            "DELETE FROM tracks_fts WHERE rowid = old.TrackId; END",
+                    "CREATE TRIGGER albums_fts_update AFTER UPDATE OF Title, ArtistId ON albums BEGIN " +
+                            "UPDATE tracks_fts SET AlbumTitle = new.Title, " +
+                            "ArtistName = (SELECT Name FROM artists WHERE ArtistId = new.ArtistId) " +
+                            "WHERE rowid IN (SELECT TrackId FROM tracks WHERE AlbumId = new.AlbumId); END",
+                    "CREATE TRIGGER artists_fts_update AFTER UPDATE OF Name ON artists BEGIN " +
+                            "UPDATE tracks_fts SET ArtistName = new.Name WHERE rowid IN " +
+                            "(SELECT TrackId FROM tracks JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+                            "WHERE albums.ArtistId = new.ArtistId); END"
+            },
+            // 2: an index for each Track.advancedSearch filter, with runtime second so a filter on album, genre
+            // or media type and a runtime range is answered from one index.  These replace the stock single
+            // column foreign key indexes, which are their prefixes.  Artists are found through the stock
+            // IFK_AlbumArtistId
+            new String[]{
+                    "CREATE INDEX tracks_album_runtime ON tracks(AlbumId, Milliseconds)",
+                    "CREATE INDEX tracks_genre_runtime ON tracks(GenreId, Milliseconds)",
+                    "CREATE INDEX tracks_media_type_runtime ON tracks(MediaTypeId, Milliseconds)",
+                    "CREATE INDEX tracks_runtime ON tracks(Milliseconds)",
+                    "DROP INDEX IF EXISTS IFK_TrackAlbumId",
+                    "DROP INDEX IF EXISTS IFK_TrackGenreId",
+                    "DROP INDEX IF EXISTS IFK_TrackMediaTypeId"
+            },
+            // 3: the other Track.all sort columns, Milliseconds already has tracks_runtime.  With TrackId as the
+            // implied last column each index reads a sorted page in either direction without a sort step
+            new String[]{
+                    "CREATE INDEX tracks_bytes ON tracks(Bytes)",
+                    "CREATE INDEX tracks_unit_price ON tracks(UnitPrice)",
+                    "CREATE INDEX tracks_name ON tracks(Name)"
+            },
+            // 4: tracks_fts again with a one letter prefix index too, so a search for a single letter reads
+            // one doclist instead of merging those of every word starting with it.  FTS5 options are fixed
+            // when the table is created, the triggers from 1 keep working against the new table
+            new String[]{
+                    "DROP TABLE tracks_fts",
+                    tracksFts("1 2 3"),
+                    TRACKS_FTS_RANK,
+                    TRACKS_FTS_FILL
+            }
+    );
+
+    private static String tracksFts(String prefixes) {
+        return "CREATE VIRTUAL TABLE tracks_fts USING fts5(Name, AlbumTitle, ArtistName, " +
+                "tokenize = 'unicode61 remove_diacritics 2', prefix = '" + prefixes + "')";
+    }
+
+    // brings the database the connection points at up to date, the caller makes sure this only runs
+    // on one connection at a time
+    static void migrate(Connection connection) throws SQLException {
+        int version = userVersion(connection);
+        if (version >= MIGRATIONS.size()) {
+            return;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            for (int i = version; i < MIGRATIONS.size(); i++) {
+                for (String sql : MIGRATIONS.get(i)) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("PRAGMA user_version = " + (i + 1));
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    static int userVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet results = stmt.executeQuery("PRAGMA user_version")) {
+            return results.next() ? results.getInt(1) : 0;
+        }
+    }
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.size();
+    }
+}
@@ -0,0 +1,104 @@
+package edu.montana.csci.csci440.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// the <option> list for Web.select, rendered once per model and display property and rebuilt after
+// a write to that model.  Rendering a select only has to mark the selected option
+class SelectOptions {
+
+    private static final String MODEL_PACKAGE = "edu.montana.csci.csci440.model.";
+    private static final ConcurrentMap<String, SelectOptions> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> modelClass;
+    private final MethodHandle all;
+    private final MethodHandle idGetter;
+    private final MethodHandle displayGetter;
+    private volatile Fragment fragment;
+
+    private SelectOptions(String model, String displayProperty) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        modelClass = Class.forName(MODEL_PACKAGE + model);
+        all = lookup.findStatic(modelClass, "all", MethodType.methodType(modelClass.getMethod("all").getReturnType()));
+        idGetter = lookup.unreflect(modelClass.getMethod("get" + model + "Id"));
+        displayGetter = lookup.unreflect(modelClass.getMethod("get" + displayProperty));
+    }
+
+    static SelectOptions forModel(String model, String displayProperty) {
+        return CACHE.computeIfAbsent(model + "." + displayProperty, key -> {
+            try {
+                return new SelectOptions(model, displayProperty);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot build a select for " + key, e);
+            }
+        });
+    }
+
+    String render(String name, Object selectedId, boolean includeEmpty) throws Throwable {
+        Fragment options = current();
+        StringBuilder select = new StringBuilder(options.html.length() + 128)
+                .append("<select style='max-width:200px' name='").append(name).append("'>\n");
+        if (includeEmpty) {
+            select.append("<option></option>");
+        }
+        Integer selectedAt = selectedId == null ? null : options.selectedOffsets.get(selectedId.toString());
+        if (selectedAt == null) {
+            select.append(options.html);
+        } else {
+            select.append(options.html, 0, selectedAt)
+                    .append(" selected")
+                    .append(options.html, selectedAt, options.html.length());
+        }
+        return select.append("</select>\n").toString();
+    }
+
+    private Fragment current() throws Throwable {
+        UnitOfWork unitOfWork = DB.currentUnitOfWork();
+        long since = unitOfWork == null ? ModelVersions.current() : unitOfWork.getStartVersion();
+        long version = ModelVersions.get(modelClass);
+        Fragment options = fragment;
+        if (options == null || options.version != version) {
+            options = build(version);
+            // a unit of work that began before the latest write to the model read its rows from before it,
+            // and one that has written may have read its own uncommitted rows.  Either is only for this page
+            if (version <= since && (unitOfWork == null || !unitOfWork.hasWritten())) {
+                fragment = options;
+            }
+        }
+        return options;
+    }
+
+    // the version is read before the rows, so a write that lands during the build forces another one
+    private Fragment build(long version) throws Throwable {
+        List<?> models = (List<?>) all.invoke();
+        StringBuilder html = new StringBuilder();
+        Map<String, Integer> selectedOffsets = new HashMap<>();
+        for (Object model : models) {
+            Object idValue = idGetter.invoke(model);
+            html.append("  <option value='").append(idValue).append("' ");
+            if (idValue != null) {
+                selectedOffsets.put(idValue.toString(), html.length());
+            }
+            html.append(">").append(displayGetter.invoke(model)).append("</option>\n");
+        }
+        return new Fragment(version, html.toString(), selectedOffsets);
+    }
+
+    private static class Fragment {
+        private final long version;
+        private final String html;
+        private final Map<String, Integer> selectedOffsets;
+
+        private Fragment(long version, String html, Map<String, Integer> selectedOffsets) {
+            this.version = version;
+            this.html = html;
+            this.selectedOffsets = selectedOffsets;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package edu.montana.csci.csci440.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// timings for every statement by SQL text, and the most recent runs that took longer than the threshold
+// together with their parameters and SQLite's EXPLAIN QUERY PLAN.  A run is the execute call plus the
+// time spent stepping through its rows, which is where SQLite does most of the work for a SELECT
+public class SlowQueries {
+
+    // statements built with varying text, like IN lists, could otherwise grow the table without bound
+    private static final int MAX_STATEMENTS = 1000;
+    private static final int MAX_PARAMETER_LENGTH = 40;
+
+    private final long thresholdNanos;
+    private final boolean showParameters;
+    private final SlowQuery[] recent;
+    private int next = 0;
+    private long slowCount = 0;
+    private final ConcurrentMap<String, QueryStats> statements = new ConcurrentHashMap<>();
+
+    SlowQueries(long thresholdMillis, int bufferSize) {
+        this(thresholdMillis, bufferSize, false);
+    }
+
+    SlowQueries(long thresholdMillis, int bufferSize, boolean showParameters) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.showParameters = showParameters;
+        this.recent = new SlowQuery[Math.max(1, bufferSize)];
+    }
+
+    // called on the thread that ran the statement, while its connection is still checked out, so the
+    // plan can be taken on the same connection
+    void record(String sql, long nanos, Map<Integer, Object> parameters, Connection connection) {
+        QueryStats stats = statements.get(sql);
+        if (stats == null && statements.size() < MAX_STATEMENTS) {
+            stats = statements.computeIfAbsent(sql, QueryStats::new);
+        }
+        if (stats != null) {
+            stats.record(nanos);
+        }
+        if (nanos < thresholdNanos) {
+            return;
+        }
+        String plan = stats != null ? stats.plan : null;
+        if (plan == null) {
+            plan = explain(sql, parameters, connection);
+            if (stats != null) {
+                stats.plan = plan;
+            }
+        }
+        SlowQuery slow = new SlowQuery(sql, describe(parameters), nanos, plan);
+        synchronized (this) {
+            recent[next] = slow;
+            next = (next + 1) % recent.length;
+            slowCount++;
+        }
+        Log.event("slow_query", "ms", slow.getMillis(), "sql", sql, "params", slow.getParameters());
+    }
+
+    // what the admin page and the log show of the parameters: by default only their types, the values can
+    // be names, emails and addresses
+    private String describe(Map<Integer, Object> parameters) {
+        List<String> shown = new ArrayList<>();
+        for (Object value : parameters.values()) {
+            if (value == null) {
+                shown.add("null");
+            } else if (!showParameters) {
+                shown.add("?" + value.getClass().getSimpleName());
+            } else {
+                String text = value.toString();
+                shown.add(text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text);
+            }
+        }
+        return shown.toString();
+    }
+
+    static String explain(String sql, Map<Integer, Object> parameters, Connection connection) {
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                stmt.setObject(parameter.getKey(), parameter.getValue());
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet results = stmt.executeQuery()) {
+                while (results.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(results.getString("detail"));
+                }
+            }
+            return plan.toString();
+        } catch (SQLException sqlException) {
+            return "(no plan: " + sqlException.getMessage() + ")";
+        }
+    }
+
+    // newest first
+    public synchronized List<SlowQuery> getRecent() {
+        List<SlowQuery> queries = new ArrayList<>();
+        for (int i = 1; i <= recent.length; i++) {
+            SlowQuery query = recent[(next - i + recent.length) % recent.length];
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    public synchronized long getSlowCount() {
+        return slowCount;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1_000_000;
+    }
+
+    public List<QueryStats> getTopByTotal(int limit) {
+        return top(Comparator.comparingLong(QueryStats::getTotalNanos), limit);
+    }
+
+    public List<QueryStats> getTopByP99(int limit) {
+        return top(Comparator.comparingLong(QueryStats::getP99Nanos), limit);
+    }
+
+    private List<QueryStats> top(Comparator<QueryStats> comparator, int limit) {
+        List<QueryStats> all = new ArrayList<>(statements.values());
+        all.sort(comparator.reversed());
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    synchronized void clear() {
+        statements.clear();
+        Arrays.fill(recent, null);
+        next = 0;
+        slowCount = 0;
+    }
+
+    public static class QueryStats {
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final Histogram micros = new Histogram();
+        private volatile String plan;
+
+        private QueryStats(String sql) {
+            this.sql = sql;
+        }
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            micros.record(nanos / 1_000);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        long getP99Nanos() {
+            return micros.percentile(0.99) * 1_000;
+        }
+
+        public double getTotalMillis() {
+            return millis(totalNanos.sum());
+        }
+
+        public double getAverageMillis() {
+            long runs = count.sum();
+            return runs == 0 ? 0 : millis(totalNanos.sum() / runs);
+        }
+
+        public double getP99Millis() {
+            return millis(getP99Nanos());
+        }
+
+        public double getMaxMillis() {
+            return millis(maxNanos.get());
+        }
+    }
+
+    public static class SlowQuery {
+        private final String sql;
+        private final String parameters;
+        private final long nanos;
+        private final String plan;
+        private final Date time = new Date();
+
+        private SlowQuery(String sql, String parameters, long nanos, String plan) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.nanos = nanos;
+            this.plan = plan;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getParameters() {
+            return parameters;
+        }
+
+        public double getMillis() {
+            return millis(nanos);
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        public Date getTime() {
+            return time;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+}
@@ -0,0 +1,80 @@
+package edu.montana.csci.csci440.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// a sort order taken from a request parameter, like "Milliseconds,-Bytes" or "Name desc, UnitPrice".
+// Only whitelisted columns get into the ORDER BY, each mapped to the SQL it sorts on, and a unique
+// tiebreak column always comes last so keyset paging has a total order.  Anything that does not parse
+// sorts by the tiebreak alone, so a tampered link still shows a page
+public class SortSpec {
+
+    private final List<String> terms;
+    private final String spec;
+
+    private SortSpec(List<String> terms, String spec) {
+        this.terms = Collections.unmodifiableList(terms);
+        this.spec = spec;
+    }
+
+    // columns maps the names allowed in the spec to the SQL expressions they sort by
+    public static SortSpec parse(String spec, Map<String, String> columns, String tiebreak) {
+        List<String> terms = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        boolean descending = false;
+        if (spec != null && !spec.trim().isEmpty()) {
+            for (String part : spec.split(",")) {
+                String term = part.trim();
+                descending = false;
+                if (term.startsWith("-")) {
+                    descending = true;
+                    term = term.substring(1).trim();
+                } else {
+                    String[] words = term.split("\\s+");
+                    if (words.length == 2 && (words[1].equalsIgnoreCase("asc") || words[1].equalsIgnoreCase("desc"))) {
+                        descending = words[1].equalsIgnoreCase("desc");
+                        term = words[0];
+                    }
+                }
+                String name = canonical(term, columns);
+                if (name == null || !seen.add(name)) {
+                    return new SortSpec(new ArrayList<>(List.of(tiebreak)), "");
+                }
+                terms.add(columns.get(name) + (descending ? " DESC" : ""));
+                names.add((descending ? "-" : "") + name);
+            }
+        }
+        // the tiebreak follows the last column's direction, so a single column index can be walked either way
+        terms.add(tiebreak + (descending ? " DESC" : ""));
+        return new SortSpec(terms, String.join(",", names));
+    }
+
+    private static String canonical(String name, Map<String, String> columns) {
+        for (String column : columns.keySet()) {
+            if (column.equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    // ORDER BY terms, e.g. "tracks.Milliseconds DESC"
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public String getOrderBy() {
+        return String.join(", ", terms);
+    }
+
+    // the spec as it should appear in a link, empty for the default order
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,233 @@
+package edu.montana.csci.csci440.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// LRU cache of compiled statements for a single physical connection, keyed by SQL text.
+// A connection is only ever used by one thread at a time, so no locking is needed here
+public class StatementCache {
+
+    private final Connection connection;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection connection, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        DB.countPrepare();
+        Entry entry = maxSize <= 0 ? null : entries.get(sql);
+        if (maxSize <= 0) {
+            entry = new Entry(sql, connection.prepareStatement(sql), false);
+        } else if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+        } else if (entry != null) {
+            // the same query is still open further up the stack, hand out a private statement
+            misses.incrementAndGet();
+            entry = new Entry(sql, connection.prepareStatement(sql), false);
+        } else {
+            misses.incrementAndGet();
+            entry = new Entry(sql, connection.prepareStatement(sql), true);
+            entries.put(sql, entry);
+            evictEldest();
+        }
+        entry.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Checkout(entry));
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            if (!eldest.inUse) {
+                iterator.remove();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    // closes every cached statement, called before the physical connection is closed
+    void clear() {
+        for (Entry entry : entries.values()) {
+            closeQuietly(entry.statement);
+        }
+        entries.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // ignore, the statement is being thrown away
+        }
+    }
+
+    private static class Entry {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final boolean cached;
+        private boolean inUse;
+
+        private Entry(String sql, PreparedStatement statement, boolean cached) {
+            this.sql = sql;
+            this.statement = statement;
+            this.cached = cached;
+        }
+    }
+
+    // counts the rows read through a result set and the time spent stepping to them
+    private static class Rows implements InvocationHandler {
+        private final Checkout checkout;
+        private final ResultSet resultSet;
+
+        private Rows(Checkout checkout, ResultSet resultSet) {
+            this.checkout = checkout;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean next = "next".equals(method.getName());
+            long start = next ? System.nanoTime() : 0;
+            try {
+                Object result = method.invoke(resultSet, args);
+                if (next) {
+                    long nanos = System.nanoTime() - start;
+                    DB.countFetch((Boolean) result, nanos);
+                    if (checkout.runNanos >= 0) {
+                        checkout.runNanos += nanos;
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private class Checkout implements InvocationHandler {
+        private final Entry entry;
+        private final List<ResultSet> resultSets = new LinkedList<>();
+        private Map<Integer, Object> parameters = new TreeMap<>();
+        // the parameters the current run was executed with, shared with parameters until they change
+        private Map<Integer, Object> runParameters;
+        // time spent on the current run of the statement so far, -1 between runs
+        private long runNanos = -1;
+        private boolean closed = false;
+
+        private Checkout(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    checkIn();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + entry.statement;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            // every statement the models run passes through here, so this is where SQL time is measured
+            boolean execute = method.getName().startsWith("execute");
+            long start = 0;
+            if (execute) {
+                finishRun();
+                runParameters = parameters;
+                start = System.nanoTime();
+            } else if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                unshareParameters();
+                parameters.put((Integer) args[0], args[1]);
+            } else if ("clearParameters".equals(method.getName())) {
+                unshareParameters();
+                parameters.clear();
+            }
+            try {
+                Object result = method.invoke(entry.statement, args);
+                if (result instanceof ResultSet) {
+                    resultSets.add((ResultSet) result);
+                    return Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, new Rows(this, (ResultSet) result));
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (execute) {
+                    long nanos = System.nanoTime() - start;
+                    DB.countExecute(nanos);
+                    runNanos = nanos;
+                }
+            }
+        }
+
+        // most statements run once and are closed, so the parameters are only copied when a statement is
+        // rebound while its last run is still to be recorded
+        private void unshareParameters() {
+            if (runParameters == parameters) {
+                parameters = new TreeMap<>(parameters);
+            }
+        }
+
+        // a run ends when the statement is executed again or checked in, by then its rows have been read
+        private void finishRun() {
+            if (runNanos >= 0) {
+                DB.recordRun(entry.sql, runNanos, runParameters, connection);
+                runNanos = -1;
+                runParameters = null;
+            }
+        }
+
+        // resets the statement so it releases its read lock, and makes it available again
+        private void checkIn() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            finishRun();
+            if (!entry.cached) {
+                closeQuietly(entry.statement);
+                return;
+            }
+            try {
+                for (ResultSet resultSet : resultSets) {
+                    resultSet.close();
+                }
+                entry.statement.clearParameters();
+                entry.inUse = false;
+            } catch (SQLException e) {
+                entries.values().remove(entry);
+                closeQuietly(entry.statement);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package edu.montana.csci.csci440.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// a UTF-8 buffered writer over an OutputStream whose buffers are reused between requests, so streaming a
+// page costs a fixed amount of heap however long the page is
+public class StreamingWriter extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final BlockingQueue<StreamingWriter> POOL = new ArrayBlockingQueue<>(64);
+
+    private final char[] chars = new char[BUFFER_SIZE];
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 3);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private int count = 0;
+    private OutputStream out;
+
+    private StreamingWriter() {
+    }
+
+    public static StreamingWriter borrow(OutputStream out) {
+        StreamingWriter writer = POOL.poll();
+        if (writer == null) {
+            writer = new StreamingWriter();
+        }
+        writer.out = out;
+        return writer;
+    }
+
+    // drops anything still buffered and returns the writer to the pool, the stream itself is left open
+    public void release() {
+        out = null;
+        count = 0;
+        bytes.clear();
+        encoder.reset();
+        POOL.offer(this);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (count == chars.length) {
+            encode(false);
+        }
+        chars[count++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == chars.length) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.length - count);
+            System.arraycopy(cbuf, off, chars, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == chars.length) {
+                encode(false);
+            }
+            int n = Math.min(len, chars.length - count);
+            str.getChars(off, off + n, chars, count);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        if (out == null) {
+            throw new IOException("Writer has been released");
+        }
+        CharBuffer in = CharBuffer.wrap(chars, 0, count);
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, endOfInput);
+            drain();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+            encoder.reset();
+        }
+        // half of a surrogate pair waits in the buffer for the rest of the character
+        int remaining = in.remaining();
+        System.arraycopy(chars, in.position(), chars, 0, remaining);
+        count = remaining;
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        if (bytes.hasRemaining()) {
+            out.write(bytes.array(), bytes.position(), bytes.remaining());
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        encode(false);
+        out.flush();
+    }
+
+    // writes out everything buffered, call before release
+    @Override
+    public void close() throws IOException {
+        encode(true);
+        out.flush();
+    }
+}
@@ -0,0 +1,167 @@
+package edu.montana.csci.csci440.util;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// one Velocity engine for the whole server.  Parsed templates stay cached in the engine, in dev mode
+// (-Dtemplates.devMode=true) they are read from src/main/resources and re-parsed when the file changes
+public class Templates {
+
+    private static final String ENCODING = "UTF-8";
+    private static final String SOURCE_ROOT = "src/main/resources";
+
+    private static final boolean DEV_MODE = Boolean.getBoolean("templates.devMode");
+    private static final VelocityEngine ENGINE = createEngine(DEV_MODE);
+    private static final Map<String, RenderTiming> TIMINGS = new ConcurrentHashMap<>();
+
+    private static VelocityEngine createEngine(boolean devMode) {
+        Properties properties = new Properties();
+        if (devMode) {
+            properties.setProperty("resource.loader", "file");
+            properties.setProperty("file.resource.loader.class", "org.apache.velocity.runtime.resource.loader.FileResourceLoader");
+            properties.setProperty("file.resource.loader.path", SOURCE_ROOT);
+            properties.setProperty("file.resource.loader.cache", "true");
+            properties.setProperty("file.resource.loader.modificationCheckInterval", "1");
+        } else {
+            properties.setProperty("resource.loader", "class");
+            properties.setProperty("class.resource.loader.class", "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+            properties.setProperty("class.resource.loader.cache", "true");
+            properties.setProperty("class.resource.loader.modificationCheckInterval", "0");
+        }
+        properties.setProperty("input.encoding", ENCODING);
+        properties.setProperty("output.encoding", ENCODING);
+        return new VelocityEngine(properties);
+    }
+
+    public static String render(String name, Map<?, ?> model) {
+        StringWriter writer = new StringWriter();
+        render(name, model, writer);
+        return writer.toString();
+    }
+
+    public static void render(String name, Map<?, ?> model, Writer writer) {
+        long start = System.nanoTime();
+        try {
+            Template template = ENGINE.getTemplate(name, ENCODING);
+            template.merge(new VelocityContext(model), writer);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            TIMINGS.computeIfAbsent(name, RenderTiming::new).record(nanos);
+            Metrics.recordRender(nanos);
+        }
+    }
+
+    // parses every template up front, so the first request for a page does not pay for it and syntax
+    // errors show up at startup.  Returns the names of the compiled templates
+    public static List<String> precompile() {
+        List<String> names = findTemplates();
+        for (String name : names) {
+            ENGINE.getTemplate(name, ENCODING);
+        }
+        return names;
+    }
+
+    private static List<String> findTemplates() {
+        try {
+            if (DEV_MODE) {
+                return listTemplates(Paths.get(SOURCE_ROOT));
+            }
+            URL url = Templates.class.getResource("/templates");
+            if (url == null) {
+                return Collections.emptyList();
+            }
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                try (FileSystem jar = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+                    return listTemplates(jar.getPath("/"));
+                }
+            }
+            return listTemplates(Paths.get(uri).getParent());
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> listTemplates(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root.resolve("templates"))) {
+            return paths.filter(path -> path.toString().endsWith(".vm"))
+                    .map(path -> root.relativize(path).toString().replace('\\', '/'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static boolean isDevMode() {
+        return DEV_MODE;
+    }
+
+    // render timings by template name, sorted by name
+    public static Map<String, RenderTiming> getTimings() {
+        return new TreeMap<>(TIMINGS);
+    }
+
+    public static class RenderTiming {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private RenderTiming(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getTotalMillis() {
+            return millis(totalNanos.sum());
+        }
+
+        public double getAverageMillis() {
+            long renders = count.sum();
+            return renders == 0 ? 0 : millis(totalNanos.sum() / renders);
+        }
+
+        public double getMaxMillis() {
+            return millis(maxNanos.get());
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1_000.0) / 1_000.0;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package edu.montana.csci.csci440.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// an in-memory inverted index from the three letter sequences of short texts, like names and titles, to
+// the ids of the texts containing them.  Each posting list is a sorted int array, and a query ranks the
+// texts sharing the most of its trigrams, so "stairwy" still finds "Stairway To Heaven".  Searches take
+// a read lock and updates a write lock, a search never sees a text half added or removed
+public class TrigramIndex {
+
+    // a text must share at least this fraction of the query's trigrams to be suggested at all
+    private static final double MIN_OVERLAP = 0.5;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // adds the text under id, replacing whatever the id had before
+    public void put(int id, String text) {
+        if (text == null) {
+            remove(id);
+            return;
+        }
+        Document document = new Document(id, text);
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.put(id, document);
+            if (previous != null) {
+                unlink(previous);
+            }
+            for (long trigram : document.trigrams) {
+                postings.computeIfAbsent(trigram, key -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(id);
+            if (previous != null) {
+                unlink(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String get(int id) {
+        lock.readLock().lock();
+        try {
+            Document document = documents.get(id);
+            return document == null ? null : document.text;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // best matches first: the share of the query's trigrams found in the text, with a bonus when the query
+    // appears in the text as is, more so at the start of a word or of the whole text.  Ties go to shorter texts
+    public List<Hit> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.length() < 2 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // no padding at the end, the last word of a query is usually still being typed
+        long[] queryTrigrams = trigrams(" " + normalized);
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int total = 0;
+            int[][] lists = new int[queryTrigrams.length][];
+            int[] sizes = new int[queryTrigrams.length];
+            for (int i = 0; i < queryTrigrams.length; i++) {
+                Postings list = postings.get(queryTrigrams[i]);
+                if (list != null) {
+                    lists[i] = list.ids;
+                    sizes[i] = list.size;
+                    total += list.size;
+                }
+            }
+            // every id once per trigram it shares with the query, so after sorting each run is one text
+            int[] matches = new int[total];
+            int at = 0;
+            for (int i = 0; i < lists.length; i++) {
+                if (lists[i] != null) {
+                    System.arraycopy(lists[i], 0, matches, at, sizes[i]);
+                    at += sizes[i];
+                }
+            }
+            Arrays.sort(matches);
+            int required = (int) Math.ceil(queryTrigrams.length * MIN_OVERLAP);
+            for (int start = 0; start < matches.length; ) {
+                int end = start;
+                while (end < matches.length && matches[end] == matches[start]) {
+                    end++;
+                }
+                int shared = end - start;
+                if (shared >= required) {
+                    Document document = documents.get(matches[start]);
+                    hits.add(new Hit(document.id, document.text, score(document.normalized, normalized, queryTrigrams.length, shared)));
+                }
+                start = end;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Hit.RANKING);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private static double score(String text, String query, int queryTrigrams, int shared) {
+        double score = (double) shared / queryTrigrams;
+        int position = text.indexOf(query);
+        if (position == 0) {
+            score += 2;
+        } else if (position > 0) {
+            score += text.charAt(position - 1) == ' ' ? 1.5 : 1;
+        }
+        return score;
+    }
+
+    private void unlink(Document document) {
+        for (long trigram : document.trigrams) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(document.id) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    // lower case letters and digits with accents stripped, anything else collapsed to a single space
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return decomposed.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    // the distinct trigrams of an already normalized and padded text, three chars packed into a long
+    static long[] trigrams(String padded) {
+        if (padded.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    private static class Document {
+        private final int id;
+        private final String text;
+        private final String normalized;
+        private final long[] trigrams;
+
+        private Document(int id, String text) {
+            this.id = id;
+            this.text = text;
+            this.normalized = normalize(text);
+            this.trigrams = trigrams(" " + normalized + " ");
+        }
+    }
+
+    // a sorted, growable array of ids
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        private void add(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+    }
+
+    public static class Hit {
+        // higher scores first, then shorter texts, then lower ids so the order is stable
+        static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::getScore).reversed()
+                .thenComparingInt(hit -> hit.text.length())
+                .thenComparingInt(Hit::getId);
+
+        private final int id;
+        private final String text;
+        private final double score;
+
+        Hit(int id, String text, double score) {
+            this.id = id;
+            this.text = text;
+            this.score = score;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package edu.montana.csci.csci440.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedList;
+import java.util.List;
+
+// one transaction on one pooled connection, shared by every DB.connect() call made during a request.
+// A read only unit of work reads through the read pool and only borrows a writable connection if asked to
+public class UnitOfWork {
+
+    private final ConnectionPool writePool;
+    private final ConnectionPool readPool;
+    private final boolean readOnly;
+    private Connection writeConnection;
+    private Connection readConnection;
+    private long connections = 0;
+    private boolean failed = false;
+    private boolean written = false;
+    private boolean committed = false;
+    private long startVersion = -1;
+    private final IdentityMap identityMap = new IdentityMap();
+    private final List<Runnable> onEnd = new LinkedList<>();
+
+    UnitOfWork(ConnectionPool writePool, ConnectionPool readPool, boolean readOnly) {
+        this.writePool = writePool;
+        this.readPool = readPool;
+        this.readOnly = readOnly;
+    }
+
+    Connection connect() throws SQLException {
+        return readOnly ? handle(read()) : handle(write());
+    }
+
+    Connection connectForWrite() throws SQLException {
+        written = true;
+        return handle(write());
+    }
+
+    // connections are acquired lazily, so requests that never touch the database never borrow one
+    private Connection write() throws SQLException {
+        if (writeConnection == null) {
+            started();
+            writeConnection = begin(writePool);
+        }
+        return writeConnection;
+    }
+
+    private Connection read() throws SQLException {
+        if (readConnection == null) {
+            started();
+            readConnection = begin(readPool);
+        }
+        return readConnection;
+    }
+
+    // taken before the transaction's first read, so its snapshot is at least this new
+    private void started() {
+        if (startVersion < 0) {
+            startVersion = ModelVersions.current();
+        }
+    }
+
+    // the ModelVersions stamp this unit's reads are at least as new as.  A model written after it may have
+    // been read as it was before the write, so what was read must not be shared past this request
+    public long getStartVersion() {
+        return startVersion < 0 ? ModelVersions.current() : startVersion;
+    }
+
+    private static Connection begin(ConnectionPool pool) throws SQLException {
+        Connection connection = pool.borrow();
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException sqlException) {
+            connection.close();
+            throw sqlException;
+        }
+        return connection;
+    }
+
+    private Connection handle(Connection connection) {
+        connections++;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handle(connection));
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean hasWritten() {
+        return written;
+    }
+
+    // runs once the transaction is over, whether it committed or rolled back
+    public void onEnd(Runnable callback) {
+        onEnd.add(callback);
+    }
+
+    public void markFailed() {
+        failed = true;
+    }
+
+    public void commit() throws SQLException {
+        if (!failed) {
+            if (writeConnection != null) {
+                writeConnection.commit();
+            }
+            if (readConnection != null) {
+                readConnection.commit();
+            }
+            committed = true;
+        }
+    }
+
+    // for onEnd callbacks that should only act on changes that were kept
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    // rolls back anything not yet committed and returns the connections to their pools
+    void end() {
+        identityMap.clear();
+        release(writeConnection);
+        release(readConnection);
+        for (Runnable callback : onEnd) {
+            callback.run();
+        }
+        onEnd.clear();
+    }
+
+    private void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            // the pool discards connections it cannot reset
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // already returned
+            }
+        }
+    }
+
+    public IdentityMap getIdentityMap() {
+        return identityMap;
+    }
+
+    // logical connections handed out during this unit of work
+    public long getConnections() {
+        return connections;
+    }
+
+    // physical connections used, at most one read and one write
+    public long getPhysicalConnections() {
+        return (writeConnection == null ? 0 : 1) + (readConnection == null ? 0 : 1);
+    }
+
+    private static class Handle implements InvocationHandler {
+        private final Connection connection;
+        private final List<Statement> statements = new LinkedList<>();
+        private boolean closed = false;
+
+        private Handle(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // the shared connection stays open, only statements made through this handle are closed
+                    for (Statement statement : statements) {
+                        statement.close();
+                    }
+                    statements.clear();
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "UnitOfWork" + connection;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been closed");
+            }
+            try {
+                Object result = method.invoke(connection, args);
+                if (result instanceof Statement) {
+                    statements.add((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,19 +1,20 @@
 package edu.montana.csci.csci440.util;
 
-import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
 import spark.Session;
-import spark.template.velocity.VelocityTemplateEngine;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Method;
-import java.math.BigDecimal;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.sql.SQLException;
 import java.util.*;
 
 import static spark.Spark.*;
@@ -21,11 +22,15 @@ import static spark.Spark.*;
 public class Web {
 
     public static final int PAGE_SIZE = 10;
+    private static final int STREAM_BUFFER_BYTES = Integer.getInteger("web.streamBufferBytes", 32 * 1024);
     private static Web INSTANCE = new Web();
     static ThreadLocal<RequestInfo> INFO = new ThreadLocal<>();
 
     public static void set(Request request, Response response, long startTime) {
-        INFO.set(new RequestInfo(request, response, startTime, DB.getConnectionCount()));
+        // GET requests read through the read only pool, model writes still get a writable connection
+        boolean readOnly = "GET".equals(request.requestMethod()) || "HEAD".equals(request.requestMethod());
+        INFO.set(new RequestInfo(request, response, startTime, DB.beginCounting(), DB.beginUnitOfWork(readOnly)));
+        INFO.get().metrics = Metrics.beginRequest();
     }
 
     public static Request getRequest(){
@@ -34,6 +39,107 @@ public class Web {
     public static Response getResponse(){ return INFO.get().getResponse(); }
 
     public static String renderTemplate(String index, Object... args) {
+        String html = Templates.render(index, templateModel(args));
+        RequestInfo info = INFO.get();
+        if (info != null) {
+            // kept for the after filter, which caches and compresses it
+            info.body = html;
+        }
+        return html;
+    }
+
+    // writes the page to the response while it renders instead of building it up as a String first,
+    // so large pages need no more heap than the writer's buffer
+    public static Object streamTemplate(String index, Object... args) throws IOException, SQLException {
+        HashMap<Object, Object> map = templateModel(args);
+        // the page goes out before the after filter runs, so commit first like redirect does
+        INFO.get().getUnitOfWork().commit();
+        HttpServletResponse response = getResponse().raw();
+        response.setContentType("text/html;charset=utf-8");
+        // nothing reaches the client until this much is written, so a template failing early is still a 500
+        response.setBufferSize(STREAM_BUFFER_BYTES);
+        RequestInfo info = INFO.get();
+        CountingOutputStream sent = new CountingOutputStream(response.getOutputStream());
+        OutputStream out = sent;
+        Gzip.DeferredOutputStream gzip = null;
+        if (acceptsGzip(info.getRequest())) {
+            // the length is not known up front, so the first compression.minBytes decide it like they do for
+            // a rendered body.  They are held back well inside the response buffer, the headers can still change
+            gzip = Gzip.deferred(out, () -> {
+                response.setHeader("Content-Encoding", "gzip");
+                response.addHeader("Vary", "Accept-Encoding");
+            });
+            out = gzip;
+        }
+        TeeOutputStream copy = null;
+        if (info.page != null) {
+            // a cacheable page is copied as it streams, it is still sent without waiting for the copy.  The
+            // copy is dropped once it outgrows what the cache would keep, so a large page stays streamed
+            copy = new TeeOutputStream(out, PageCache.getMaxPageBytes());
+            out = copy;
+        }
+        StreamingWriter writer = StreamingWriter.borrow(out);
+        try {
+            Templates.render(index, map, writer);
+            writer.close();
+        } catch (RuntimeException | IOException e) {
+            writer.release();
+            if (gzip != null) {
+                gzip.abort();
+            }
+            info.page = null;
+            if (response.isCommitted()) {
+                // the status and part of the page are out, ending the response normally would pass the
+                // truncated page off as complete, so drop the connection instead
+                org.eclipse.jetty.server.Request.getBaseRequest(info.getRequest().raw()).getHttpChannel().abort(e);
+            } else {
+                response.reset();
+            }
+            throw e;
+        }
+        writer.release();
+        if (gzip != null) {
+            gzip.close();
+        }
+        info.bodyBytes = gzip != null ? gzip.getUncompressedBytes() : sent.count;
+        info.sentBytes = sent.count;
+        if (copy != null) {
+            info.body = copy.getCopy();
+        }
+        return "";
+    }
+
+    // writes the body to the client now, gzipped if the client takes it and it is over the threshold, and
+    // returns false if it is small enough to be left for Spark to send as it is
+    private static boolean sendCompressed(RequestInfo info, Request request, Response response, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        info.bodyBytes = info.sentBytes = bytes.length;
+        if (bytes.length < Gzip.MIN_BYTES) {
+            return false;
+        }
+        HttpServletResponse raw = response.raw();
+        raw.addHeader("Vary", "Accept-Encoding");
+        if (!acceptsGzip(request)) {
+            return false;
+        }
+        byte[] compressed = Gzip.compress(bytes);
+        if (raw.getContentType() == null) {
+            raw.setContentType("text/html;charset=utf-8");
+        }
+        raw.setHeader("Content-Encoding", "gzip");
+        raw.setContentLength(compressed.length);
+        raw.getOutputStream().write(compressed);
+        // once committed Spark skips writing the route's own body
+        raw.flushBuffer();
+        info.sentBytes = compressed.length;
+        return true;
+    }
+
+    private static boolean acceptsGzip(Request request) {
+        return "GET".equals(request.requestMethod()) && Gzip.accepts(request.headers("Accept-Encoding"));
+    }
+
+    private static HashMap<Object, Object> templateModel(Object... args) {
         HashMap<Object, Object> map = new HashMap<>();
         for (int i = 0; i < args.length; i++) {
             Object arg = args[i];
@@ -44,59 +150,23 @@ public class Web {
         map.put("message", getMessage());
         map.put("error", getError());
         map.put("web", INSTANCE);
-        return new VelocityTemplateEngine().render(new ModelAndView(map, index));
+        return map;
     }
 
     public static void putValuesInto(Object obj, String... properties) {
         Request req = getRequest();
+        FormBinder binder = FormBinder.forClass(obj.getClass());
         try {
-            Class<?> clazz = obj.getClass();
             for (String property : properties) {
-                Method method = findMethod(clazz, "set" + property);
-                if (method.getParameterTypes()[0] == Integer.class || method.getParameterTypes()[0] == Integer.TYPE) {
-                    int i = Integer.parseInt(req.queryParams(property));
-                    method.invoke(obj, i);
-                } else if (method.getParameterTypes()[0] == Long.class || method.getParameterTypes()[0] == Long.TYPE) {
-                    long i = Long.parseLong(req.queryParams(property));
-                    method.invoke(obj, i);
-                } else if (method.getParameterTypes()[0] == Date.class) {
-                    SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy");
-                    Date date = formatter.parse(req.queryParams(property));
-                    method.invoke(obj, date);
-                } else if (method.getParameterTypes()[0] == String.class) {
-                    method.invoke(obj, req.queryParams(property));
-                } else if (method.getParameterTypes()[0] == BigDecimal.class) {
-                    method.invoke(obj, parseBigDecimal(req, property));
-                } else {
-                    throw new IllegalStateException("Do not know how to set value of type " + method.getParameterTypes()[0].getName());
-                }
+                binder.bind(obj, property, req.queryParams(property));
             }
-        } catch (Exception e) {
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static BigDecimal parseBigDecimal(Request req, String property) {
-        try {
-            return new BigDecimal(req.queryParams(property));
-        } catch (Exception e) {
-            // formatting exception, return null
-            return null;
-        }
-    }
-
-    private static Method findMethod(Class<?> clazz, String s) {
-        Method[] methods = clazz.getMethods();
-        for (Method method : methods) {
-            if (method.getName().equals(s) &&
-                    method.getParameterTypes().length == 1 &&
-            !method.getParameterTypes()[0].getPackageName().startsWith("edu.montana")) {
-                return method;
-            }
-        }
-        throw new IllegalStateException("Unanable to find a method named " + s);
-    }
-
     public static void message(String s) {
         getRequest().session().attribute(":message", s);
     }
@@ -120,6 +190,12 @@ public class Web {
     }
 
     public static Object redirect(String location) {
+        // the redirect is flushed to the client immediately, so the follow up request must see our writes
+        try {
+            INFO.get().getUnitOfWork().commit();
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
         getResponse().redirect(location);
         return "";
     }
@@ -137,12 +213,47 @@ public class Web {
         }
     }
 
+    // a value as text inside an element or a quoted attribute, for anything that may hold what someone typed
+    public String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                case '\'':
+                    escaped.append("&#39;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    // keyset paged lists link to the pages on either side by cursor, anything else by page number
     public String pagingWidget(List collection) {
         String div = "<div style='padding-bottom:12px'>";
-        String prev = prevPage();
+        String prev = prevPage(collection);
         String next = nextPage(collection);
         if (prev.equals("")) {
             div += next;
+        } else if (collection instanceof Cursor.Paged) {
+            div += prev + (next.equals("") ? "" : " &#9679; " + next);
         } else {
             div += prev + " &#9679; Page " + getPage() + " &#9679; " + next;
         }
@@ -151,6 +262,10 @@ public class Web {
 
     public String nextPage(List collection){
         String otherParams = getParamsForPaging();
+        if (collection instanceof Cursor.Paged) {
+            Cursor next = ((Cursor.Paged) collection).getNextCursor();
+            return next == null ? "" : cursorLink(next, otherParams, "Next Page &gt;&gt;");
+        }
         if (collection.size() == PAGE_SIZE) {
             Integer page = getPage();
             return "<a href='" + getRequest().pathInfo() + "?page=" + (page + 1) + "&" + otherParams + "'>Next Page &gt;&gt;</a>";
@@ -177,6 +292,19 @@ public class Web {
         }
     }
 
+    // the position to page from, null for the first page or a token that does not parse
+    public static Cursor getCursor() {
+        return Cursor.parse(getRequest().queryParams("cursor"));
+    }
+
+    public String prevPage(List collection) {
+        if (collection instanceof Cursor.Paged) {
+            Cursor previous = ((Cursor.Paged) collection).getPreviousCursor();
+            return previous == null ? "" : cursorLink(previous, getParamsForPaging(), "&lt;&lt;  Previous Page");
+        }
+        return prevPage();
+    }
+
     public String prevPage() {
         Integer page = getPage();
         String otherParams = getParamsForPaging();
@@ -189,11 +317,16 @@ public class Web {
         }
     }
 
+    private String cursorLink(Cursor cursor, String otherParams, String text) {
+        return "<a href='" + getRequest().pathInfo() + "?cursor=" + cursor.encode() +
+                (otherParams.isEmpty() ? "" : "&" + otherParams) + "'>" + text + "</a>";
+    }
+
     private String getParamsForPaging() {
         StringBuilder queryParamsForPaging = new StringBuilder("");
         Set<String> queryParams = getRequest().queryParams();
         for (String queryParam : queryParams) {
-            if (!"page".equals(queryParam)) {
+            if (!"page".equals(queryParam) && !"cursor".equals(queryParam)) {
                 if (queryParamsForPaging.length() != 0) {
                     queryParamsForPaging.append("&");
                 }
@@ -214,31 +347,13 @@ public class Web {
     }
 
     public String select(String model, String displayProperty, Object selectedId, boolean includeEmpty) throws Exception {
-        String select = "<select style='max-width:200px' name='" + model + "Id'>\n";
-        Class<?> clazz = Class.forName("edu.montana.csci.csci440.model." + model);
-        Method all = clazz.getMethod("all");
-        List invoke = (List) all.invoke(null);
-        Method idGetter = clazz.getMethod("get" + model + "Id");
-        Method displayGetter = clazz.getMethod("get" + displayProperty);
-        if (includeEmpty) {
-            select += "<option></option>";
-        }
-        for (Object o : invoke) {
-            Object idValue = idGetter.invoke(o);
-            String selectedString;
-            if (idValue != null &&
-                    selectedId != null &&
-                    idValue.toString().equals(selectedId.toString())) {
-                selectedString = " selected";
-            } else {
-                selectedString = "";
-            }
-            select += "  <option value='" + idValue + "' " + selectedString + ">" +
-                    displayGetter.invoke(o) +
-                    "</option>\n";
+        try {
+            return SelectOptions.forModel(model, displayProperty).render(model + "Id", selectedId, includeEmpty);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
         }
-        select += "</select>\n";
-        return select;
     }
 
     public String param(String name) {
@@ -246,31 +361,92 @@ public class Web {
     }
 
     public static void init() {
+        List<String> templates = Templates.precompile();
+        Log.info("Compiled " + templates.size() + " templates" + (Templates.isDevMode() ? " (dev mode)" : ""));
+
         before((request, response) -> {
-            System.out.println(">> REQUEST " + request.requestMethod() + " " + request.pathInfo() + getParameterInfo(request));
             Web.set(request, response, System.currentTimeMillis());
+            String etag = ConditionalGet.etagFor(request);
+            if (etag != null) {
+                response.header("ETag", etag);
+                response.header("Cache-Control", "no-cache");
+                if (ConditionalGet.matches(request.headers("If-None-Match"), etag)) {
+                    // nothing has been written to the page's models since the client's copy was rendered
+                    halt(304);
+                }
+            }
+            PageCache.Lookup page = PageCache.lookup(request);
+            if (page != null) {
+                if (page.getBody() != null) {
+                    response.type("text/html;charset=utf-8");
+                    if (sendCompressed(INFO.get(), request, response, page.getBody())) {
+                        halt(200, "");
+                    }
+                    halt(200, page.getBody());
+                }
+                INFO.get().page = page;
+            }
         });
         after((request, response) -> {
-            long startTimestamp = INFO.get().timestamp;
-            long startConnections = INFO.get().getConnections();
-            long endConnections = DB.getConnectionCount();
-            long totalConnections = endConnections - startConnections;
-            System.out.println("  << REQUEST " + request.requestMethod() + " " + request.pathInfo() + " completed in " +
-                    ((System.currentTimeMillis() - startTimestamp) / 1000.0) + " seconds " +
-                    "(" + totalConnections + " Database Connection" + (totalConnections == 1 ? "" : "s") + ")");
+            // commit before the body is sent, so a failed commit still surfaces as an error page
+            RequestInfo info = INFO.get();
+            info.getUnitOfWork().commit();
+            if (info.body != null && response.status() == 200 && !response.raw().isCommitted()) {
+                if (info.page != null) {
+                    PageCache.store(info.page, info.body);
+                }
+                sendCompressed(info, request, response, info.body);
+            } else if (info.page != null && info.body != null && response.status() == 200) {
+                // a streamed page, already sent
+                PageCache.store(info.page, info.body);
+            }
+        });
+        afterAfter((request, response) -> {
+            RequestInfo info = INFO.get();
+            UnitOfWork unitOfWork = DB.endUnitOfWork();
+            Metrics.RequestMetrics metrics = Metrics.endRequest();
+            DB.endCounting();
+            INFO.remove();
+            if (info == null || unitOfWork == null || metrics == null) {
+                return;
+            }
+            long nanos = System.nanoTime() - info.startNanos;
+            int status = response.status();
+            Metrics.recordRequest(Metrics.routeFor(request.requestMethod(), request.pathInfo(), status), status, nanos, metrics, info.counters);
+            Log.event("request",
+                    "method", request.requestMethod(),
+                    "path", request.pathInfo(),
+                    "params", getParameterInfo(request),
+                    "status", status,
+                    "ms", Math.round(nanos / 1e4) / 100.0,
+                    "sql", info.counters.getStatementsExecuted(),
+                    "rows", info.counters.getRowsRead(),
+                    "sql_ms", Math.round(info.counters.getJdbcMillis() * 100) / 100.0,
+                    "render_ms", Math.round(metrics.getRenderMillis() * 100) / 100.0,
+                    "connections", info.counters.getConnections(),
+                    "physical", unitOfWork.getPhysicalConnections(),
+                    "bytes", info.bodyBytes,
+                    "sent_bytes", info.sentBytes);
         });
 
         exception(Exception.class, (e, request, response) -> {
-            System.out.println("################################################################");
-            System.out.println("#  ERROR ");
-            System.out.println("################################################################");
-            System.out.println("An error occurred: " + e.getMessage());
-            e.printStackTrace();
+            UnitOfWork unitOfWork = DB.currentUnitOfWork();
+            if (unitOfWork != null) {
+                unitOfWork.markFailed();
+            }
 
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
             e.printStackTrace(pw);
+            Log.event("error", "method", request.requestMethod(), "path", request.pathInfo(), "message", e.getMessage());
+            Log.info(sw.toString());
+            if (response.raw().isCommitted()) {
+                // a streamed page failed part way, its connection has been aborted
+                return;
+            }
             response.status(500);
+            // an error page must not be revalidated as if it were the real one
+            response.raw().setHeader("ETag", null);
             response.body(Web.renderTemplate("templates/error.vm",
                     "error", e,
                     "stacktrace", sw.getBuffer().toString()));
@@ -280,7 +456,7 @@ public class Web {
     private static String getParameterInfo(Request request) {
         Set<String> params = request.queryParams();
         if (params.size() > 0) {
-            StringBuilder str = new StringBuilder("\n   Parameters: {");
+            StringBuilder str = new StringBuilder("{");
             Object[] paramsArr = params.toArray();
             Arrays.sort(paramsArr);
             for (int i = 0; i < paramsArr.length; i++) {
@@ -293,21 +469,82 @@ public class Web {
             str.append("}");
             return str.toString();
         } else {
-            return "";
+            return "{}";
+        }
+    }
+
+    private static class TeeOutputStream extends FilterOutputStream {
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream(8192);
+
+        private TeeOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                if (copy.size() + len > limit) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        // everything written, or null if it went over the limit
+        private String getCopy() {
+            return copy == null ? null : copy.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
         }
     }
 
     private static class RequestInfo {
-        public RequestInfo(Request request, Response response, long timestamp, long connections) {
+        public RequestInfo(Request request, Response response, long timestamp, DB.Counters counters, UnitOfWork unitOfWork) {
             this.request = request;
             this.response = response;
             this.timestamp = timestamp;
-            this.connections = connections;
+            this.counters = counters;
+            this.unitOfWork = unitOfWork;
         }
         private Request request;
         private Response response;
         private long timestamp;
-        private long connections;
+        // this request's own database work, other requests running at the same time don't show up in it
+        private DB.Counters counters;
+        private UnitOfWork unitOfWork;
+        private PageCache.Lookup page;
+        private final long startNanos = System.nanoTime();
+        private Metrics.RequestMetrics metrics;
+        private String body;
+        private long bodyBytes = -1;
+        private long sentBytes = -1;
 
         public Request getRequest() {
             return request;
@@ -321,8 +558,12 @@ public class Web {
             return timestamp;
         }
 
-        public long getConnections() {
-            return connections;
+        public DB.Counters getCounters() {
+            return counters;
+        }
+
+        public UnitOfWork getUnitOfWork() {
+            return unitOfWork;
         }
     }
 
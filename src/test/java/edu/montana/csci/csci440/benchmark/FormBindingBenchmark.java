@@ -0,0 +1,99 @@
+package edu.montana.csci.csci440.benchmark;
+
+import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.FormBinder;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// compares FormBinder against the reflective putValuesInto it replaced, binding the track form.
+// Run the main method from the IDE, results are nanoseconds per form after warmup
+public class FormBindingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int FORMS_PER_ROUND = 100_000;
+
+    private static int sink;
+
+    public static void main(String[] args) throws Throwable {
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("Name", "Example");
+        form.put("Milliseconds", "343719");
+        form.put("Bytes", "11170334");
+        form.put("UnitPrice", "0.99");
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            reflectiveRound(form);
+            binderRound(form);
+        }
+        long reflective = 0;
+        long binder = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            reflective += reflectiveRound(form);
+            binder += binderRound(form);
+        }
+        long forms = (long) MEASURED_ROUNDS * FORMS_PER_ROUND;
+        System.out.printf("reflective putValuesInto: %.1f ns/form%n", (double) reflective / forms);
+        System.out.printf("FormBinder: %.1f ns/form%n", (double) binder / forms);
+        System.out.println("(" + sink + ")");
+    }
+
+    private static long binderRound(Map<String, String> form) throws Throwable {
+        long start = System.nanoTime();
+        for (int i = 0; i < FORMS_PER_ROUND; i++) {
+            Track track = new Track();
+            FormBinder binder = FormBinder.forClass(Track.class);
+            for (Map.Entry<String, String> field : form.entrySet()) {
+                binder.bind(track, field.getKey(), field.getValue());
+            }
+            sink += track.getName().length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long reflectiveRound(Map<String, String> form) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < FORMS_PER_ROUND; i++) {
+            Track track = new Track();
+            reflectivePutValuesInto(track, form);
+            sink += track.getName().length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // the previous Web.putValuesInto, reading from a map instead of the request
+    private static void reflectivePutValuesInto(Object obj, Map<String, String> form) throws Exception {
+        Class<?> clazz = obj.getClass();
+        for (String property : form.keySet()) {
+            Method method = findMethod(clazz, "set" + property);
+            if (method.getParameterTypes()[0] == Integer.class || method.getParameterTypes()[0] == Integer.TYPE) {
+                method.invoke(obj, Integer.parseInt(form.get(property)));
+            } else if (method.getParameterTypes()[0] == Long.class || method.getParameterTypes()[0] == Long.TYPE) {
+                method.invoke(obj, Long.parseLong(form.get(property)));
+            } else if (method.getParameterTypes()[0] == Date.class) {
+                SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy");
+                method.invoke(obj, formatter.parse(form.get(property)));
+            } else if (method.getParameterTypes()[0] == String.class) {
+                method.invoke(obj, form.get(property));
+            } else if (method.getParameterTypes()[0] == BigDecimal.class) {
+                method.invoke(obj, new BigDecimal(form.get(property)));
+            }
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String s) {
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().equals(s) &&
+                    method.getParameterTypes().length == 1 &&
+                    !method.getParameterTypes()[0].getPackageName().startsWith("edu.montana")) {
+                return method;
+            }
+        }
+        throw new IllegalStateException("Unanable to find a method named " + s);
+    }
+}
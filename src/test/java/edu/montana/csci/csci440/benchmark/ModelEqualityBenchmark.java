@@ -0,0 +1,100 @@
+package edu.montana.csci.csci440.benchmark;
+
+import edu.montana.csci.csci440.model.Track;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+// compares Model.equals/hashCode against the reflective version they replaced, over every track.
+// Run the main method from the IDE, results are nanoseconds per call after warmup
+public class ModelEqualityBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static int sink;
+
+    public static void main(String[] args) {
+        List<Track> tracks = Track.all();
+        List<Track> copies = Track.all();
+        Track[] left = tracks.toArray(new Track[0]);
+        Track[] right = copies.toArray(new Track[0]);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            reflectiveRound(left, right);
+            handleRound(left, right);
+        }
+        long reflective = 0;
+        long handles = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            reflective += reflectiveRound(left, right);
+            handles += handleRound(left, right);
+        }
+        long calls = (long) MEASURED_ROUNDS * left.length * 2;
+        System.out.printf("reflective equals+hashCode: %.1f ns/call%n", (double) reflective / calls);
+        System.out.printf("method handle equals+hashCode: %.1f ns/call%n", (double) handles / calls);
+        System.out.println("(" + sink + ")");
+    }
+
+    private static long handleRound(Track[] left, Track[] right) {
+        long start = System.nanoTime();
+        for (int i = 0; i < left.length; i++) {
+            sink += left[i].hashCode();
+            sink += left[i].equals(right[i]) ? 1 : 0;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long reflectiveRound(Track[] left, Track[] right) {
+        long start = System.nanoTime();
+        for (int i = 0; i < left.length; i++) {
+            sink += reflectiveHashCode(left[i]);
+            sink += reflectiveEquals(left[i], right[i]) ? 1 : 0;
+        }
+        return System.nanoTime() - start;
+    }
+
+    // the previous Model implementation
+    private static boolean reflectiveEquals(Object model, Object obj) {
+        if (obj == null || obj.getClass() != model.getClass()) {
+            return false;
+        }
+        for (Field declaredField : model.getClass().getDeclaredFields()) {
+            if (skip(declaredField)) {
+                continue;
+            }
+            declaredField.setAccessible(true);
+            try {
+                if (!Objects.equals(declaredField.get(model), declaredField.get(obj))) {
+                    return false;
+                }
+            } catch (IllegalAccessException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int reflectiveHashCode(Object model) {
+        List<Object> values = new LinkedList<>();
+        for (Field declaredField : model.getClass().getDeclaredFields()) {
+            if (skip(declaredField)) {
+                continue;
+            }
+            declaredField.setAccessible(true);
+            try {
+                values.add(declaredField.get(model));
+            } catch (IllegalAccessException e) {
+                return 0;
+            }
+        }
+        return Objects.hash(values.toArray());
+    }
+
+    private static boolean skip(Field field) {
+        return Modifier.isTransient(field.getModifiers()) || Modifier.isStatic(field.getModifiers());
+    }
+}
@@ -0,0 +1,96 @@
+package edu.montana.csci.csci440.benchmark;
+
+import edu.montana.csci.csci440.util.DB;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// measures what the statement cache's proxies add to a query: every call on the statement and on its
+// result set goes through them so SQL time and rows can be counted.  The same prepared statement is run
+// directly on a plain connection and through DB.connect(), reading every column of every row.  Run the
+// main method from the IDE, results are microseconds per query after warmup
+public class StatementCacheBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static final String BY_ID = "SELECT * FROM tracks WHERE TrackId = ?";
+    private static final String BY_ALBUM = "SELECT * FROM tracks WHERE AlbumId = ? ORDER BY TrackId";
+    private static final String SCAN = "SELECT * FROM tracks ORDER BY TrackId";
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        compare("one row by id", BY_ID, 20_000, 1);
+        compare("an album's tracks", BY_ALBUM, 20_000, 141);
+        compare("every track", SCAN, 50, 0);
+        System.out.println("(" + sink + ")");
+    }
+
+    private static void compare(String name, String sql, int queries, int parameter) throws SQLException {
+        try (Connection plain = DriverManager.getConnection("jdbc:sqlite:db/chinook.db");
+             PreparedStatement direct = prepare(plain, sql)) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                directRound(direct, queries, parameter);
+                cachedRound(sql, queries, parameter);
+            }
+            long directNanos = 0;
+            long cachedNanos = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                directNanos += directRound(direct, queries, parameter);
+                cachedNanos += cachedRound(sql, queries, parameter);
+            }
+            long total = (long) MEASURED_ROUNDS * queries;
+            System.out.printf("%s: direct %.1f us/query, through the cache %.1f us/query (%+.1f%%)%n", name,
+                    directNanos / 1e3 / total, cachedNanos / 1e3 / total, 100.0 * (cachedNanos - directNanos) / directNanos);
+        }
+    }
+
+    // the plain connection gets the same pragmas as the pooled ones, so only the proxies differ
+    private static PreparedStatement prepare(Connection plain, String sql) throws SQLException {
+        DB.getPragmaProfile().readOnly().apply(plain);
+        return plain.prepareStatement(sql);
+    }
+
+    private static long directRound(PreparedStatement stmt, int queries, int parameter) throws SQLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            if (parameter > 0) {
+                stmt.setLong(1, parameter);
+            }
+            read(stmt.executeQuery());
+        }
+        return System.nanoTime() - start;
+    }
+
+    // the connection stays open across the round like it does across a request, each query checks its
+    // statement out of the cache and back in as the models do
+    private static long cachedRound(String sql, int queries, int parameter) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = DB.connect()) {
+            for (int i = 0; i < queries; i++) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    if (parameter > 0) {
+                        stmt.setLong(1, parameter);
+                    }
+                    read(stmt.executeQuery());
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void read(ResultSet results) throws SQLException {
+        while (results.next()) {
+            sink += results.getLong("TrackId") + results.getString("Name").length() + results.getLong("AlbumId")
+                    + results.getLong("MediaTypeId") + results.getLong("GenreId") + results.getLong("Milliseconds")
+                    + results.getLong("Bytes") + results.getBigDecimal("UnitPrice").intValue();
+            String composer = results.getString("Composer");
+            sink += composer == null ? 0 : composer.length();
+        }
+        results.close();
+    }
+}
@@ -0,0 +1,89 @@
+package edu.montana.csci.csci440.benchmark;
+
+import edu.montana.csci.csci440.model.Track;
+import edu.montana.csci.csci440.util.Cursor;
+import edu.montana.csci.csci440.util.DB;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// compares Track.search against the LIKE '%term%' scan it replaced, with the tracks scaled to 1x, 10x and
+// 100x the Chinook row count.  The copies go into db/chinook.db through the schema's own triggers, so the
+// search runs against the same index and query the app uses, and the database is restored at the end.
+// Run the main method from the IDE, results are milliseconds per first page of results
+public class TrackSearchBenchmark {
+
+    private static final int[] SCALES = {1, 10, 100};
+    private static final String[] TERMS = {"a", "lo", "love", "stairway", "rock", "xyz"};
+    private static final int ROUNDS = 20;
+
+    private static final String LIKE_SEARCH = "SELECT tracks.*, albums.Title AS AlbumTitle, artists.Name AS ArtistName " +
+            "FROM tracks " +
+            "LEFT JOIN albums ON tracks.AlbumId = albums.AlbumId " +
+            "LEFT JOIN artists ON albums.ArtistId = artists.ArtistId " +
+            "WHERE tracks.Name LIKE ? LIMIT 10 OFFSET 0";
+
+    private static int sink;
+
+    public static void main(String[] args) throws Exception {
+        try {
+            int copies = 1;
+            for (int scale : SCALES) {
+                copies = grow(copies, scale);
+                System.out.printf("%dx (%d tracks)%n", scale, Track.count());
+                for (String term : TERMS) {
+                    System.out.printf("  %-10s LIKE %8.3f ms   FTS %8.3f ms%n", term, like(term), search(term));
+                }
+            }
+            System.out.println("(" + sink + ")");
+        } finally {
+            DB.reset();
+        }
+    }
+
+    // adds copies of the stock tracks until there are scale of them, the triggers index each one
+    private static int grow(int copies, int scale) throws SQLException {
+        try (Connection conn = DB.connectForWrite();
+             Statement stmt = conn.createStatement()) {
+            for (int copy = copies; copy < scale; copy++) {
+                stmt.execute("INSERT INTO tracks (TrackId, Name, AlbumId, MediaTypeId, GenreId, Composer, " +
+                        "Milliseconds, Bytes, UnitPrice) SELECT TrackId + " + copy * 10_000 + ", Name, AlbumId, " +
+                        "MediaTypeId, GenreId, Composer, Milliseconds, Bytes, UnitPrice FROM tracks WHERE TrackId < 10000");
+            }
+        }
+        return scale;
+    }
+
+    private static double search(String term) {
+        sink += Track.search((Cursor) null, 10, term).size();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += Track.search((Cursor) null, 10, term).size();
+        }
+        return (System.nanoTime() - start) / 1e6 / ROUNDS;
+    }
+
+    private static double like(String term) throws SQLException {
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement(LIKE_SEARCH)) {
+            stmt.setString(1, "%" + term + "%");
+            run(stmt);
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                run(stmt);
+            }
+            return (System.nanoTime() - start) / 1e6 / ROUNDS;
+        }
+    }
+
+    private static void run(PreparedStatement stmt) throws SQLException {
+        try (ResultSet results = stmt.executeQuery()) {
+            while (results.next()) {
+                sink += results.getString("Name").length();
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package edu.montana.csci.csci440.model;
 
 import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.util.DB;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
@@ -15,6 +16,17 @@ public class AlbumTest extends DBTest {
         assertEquals(347, all.size());
     }
 
+    @Test
+    void testIncludingLoadsArtistsInOneQuery() {
+        long connectionCount = DB.getConnectionCount();
+        List<Album> albums = Album.all(1, 10).including("artist");
+        assertEquals(connectionCount + 2, DB.getConnectionCount());
+        for (Album album : albums) {
+            assertEquals(album.getArtistId(), album.getArtist().getArtistId());
+        }
+        assertEquals(connectionCount + 2, DB.getConnectionCount());
+    }
+
     @Test
     void testPagingWorks() {
         assertEquals(100, Album.all(1, 100).size());
@@ -0,0 +1,41 @@
+package edu.montana.csci.csci440.model;
+
+import edu.montana.csci.csci440.DBTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelTest extends DBTest {
+
+    @Test
+    void testModelsLoadedFromTheSameRowAreEqual() {
+        Track first = Track.find(1);
+        Track second = Track.find(1);
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, Track.find(2));
+    }
+
+    @Test
+    void testChangedFieldsBreakEquality() {
+        Artist first = Artist.find(1);
+        Artist second = Artist.find(1);
+        second.setName("Changed");
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void testPreloadedRelationsAreIgnored() {
+        Album preloaded = Album.all(1, 1).including("artist").getFirst();
+        assertEquals(Album.find(preloaded.getAlbumId()), preloaded);
+    }
+
+    @Test
+    void testHashCodeMatchesObjectsHashOfTheRowFields() {
+        Genre genre = Genre.find(1);
+        assertEquals(Objects.hash(genre.getGenreId(), genre.getName()), genre.hashCode());
+    }
+}
@@ -0,0 +1,40 @@
+package edu.montana.csci.csci440.model;
+
+import edu.montana.csci.csci440.DBTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestionTest extends DBTest {
+
+    @Test
+    void testSuggestsTracksAlbumsAndArtists() {
+        List<Suggestion> suggestions = Suggestion.suggest("led zep", 5);
+        assertEquals(Suggestion.Kind.ARTIST, suggestions.get(0).getKind());
+        assertEquals("Led Zeppelin", suggestions.get(0).getName());
+        assertEquals("/artists/22", suggestions.get(0).getUrl());
+        assertTrue(Suggestion.suggest("stairway", 10).stream()
+                .anyMatch(s -> s.getKind() == Suggestion.Kind.TRACK && s.getName().equals("Stairway To Heaven")));
+        assertTrue(Suggestion.suggest("for those about", 10).stream()
+                .anyMatch(s -> s.getKind() == Suggestion.Kind.ALBUM));
+    }
+
+    @Test
+    void testSuggestionsFollowWrites() {
+        Suggestion.build();
+        Track track = Track.find(1);
+        track.setName("Quixotic Anthem");
+        assertTrue(track.update());
+        assertEquals(1L, Suggestion.suggest("quixotic", 5).get(0).getId());
+
+        Album album = new Album();
+        album.setTitle("Xylophone Nocturnes");
+        album.setArtist(Artist.find(1));
+        assertTrue(album.create());
+        assertEquals(album.getAlbumId(), (Long) Suggestion.suggest("xylophone", 5).get(0).getId());
+        album.delete();
+        assertTrue(Suggestion.suggest("xylophone", 5).isEmpty());
+    }
+}
@@ -1,9 +1,15 @@
 package edu.montana.csci.csci440.model;
 
 import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.util.Cursor;
 import edu.montana.csci.csci440.util.DB;
 import org.junit.jupiter.api.Test;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,6 +31,68 @@ public class TrackTest extends DBTest {
         assertEquals(0, Track.all(5, 1000).size());
     }
 
+    @Test
+    void testCursorPagingMatchesOffsetPaging() {
+        List<Long> offsetIds = new ArrayList<>();
+        for (int page = 1; page <= 4; page++) {
+            Track.all(page, 1000, "Milliseconds").forEach(track -> offsetIds.add(track.getTrackId()));
+        }
+        List<Long> cursorIds = new ArrayList<>();
+        CursorList<Track> tracks = Track.all((Cursor) null, 1000, "Milliseconds");
+        assertNull(tracks.getPreviousCursor());
+        while (true) {
+            tracks.forEach(track -> cursorIds.add(track.getTrackId()));
+            if (tracks.getNextCursor() == null) {
+                break;
+            }
+            tracks = Track.all(Cursor.parse(tracks.getNextCursor().encode()), 1000, "Milliseconds");
+        }
+        assertEquals(503, tracks.size());
+        assertEquals(offsetIds, cursorIds);
+
+        // and back again to the start
+        CursorList<Track> previous = Track.all(tracks.getPreviousCursor(), 1000, "Milliseconds");
+        assertEquals(cursorIds.subList(2000, 3000), ids(previous));
+        previous = Track.all(Track.all(previous.getPreviousCursor(), 1000, "Milliseconds").getPreviousCursor(), 1000, "Milliseconds");
+        assertEquals(cursorIds.subList(0, 1000), ids(previous));
+        assertNull(previous.getPreviousCursor());
+        assertNotNull(previous.getNextCursor());
+    }
+
+    @Test
+    void testCursorPagingSearch() {
+        CursorList<Track> first = Track.search((Cursor) null, 5, "love");
+        CursorList<Track> second = Track.search(first.getNextCursor(), 5, "love");
+        assertEquals(ids(Track.search(1, 10, null, "love")), concat(ids(first), ids(second)));
+        assertEquals(ids(first), ids(Track.search(second.getPreviousCursor(), 5, "love")));
+        // a cursor from another listing starts over rather than failing
+        assertEquals(ids(first), ids(Track.search(Track.all((Cursor) null, 5).getNextCursor(), 5, "love")));
+    }
+
+    // "a" matches 1511 tracks, every one of them is ranked and paged to
+    @Test
+    void testSearchRanksEveryMatch() {
+        List<Long> ranked = ids(Track.search(1, 2000, null, "a"));
+        assertEquals(1511, ranked.size());
+        assertEquals(ranked.subList(1500, 1510), ids(Track.search(151, 10, null, "a")));
+        assertEquals(ranked.subList(1510, 1511), ids(Track.search(152, 10, null, "a")));
+        CursorList<Track> first = Track.search((Cursor) null, 10, "a");
+        CursorList<Track> second = Track.search(first.getNextCursor(), 10, "a");
+        assertEquals(ranked.subList(0, 20), concat(ids(first), ids(second)));
+    }
+
+    private static List<Long> ids(List<Track> tracks) {
+        List<Long> ids = new ArrayList<>();
+        tracks.forEach(track -> ids.add(track.getTrackId()));
+        return ids;
+    }
+
+    private static List<Long> concat(List<Long> first, List<Long> second) {
+        List<Long> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
     @Test
     void testCreateWorks() {
         Track track = new Track();
@@ -75,6 +143,7 @@ public class TrackTest extends DBTest {
         String newTitle = "A New Name";
         track.setName(newTitle);
         track.update();
+        assertEquals(1L, track.getTrackId());
         assertEquals(newTitle, Track.find(1).getName());
     }
 
@@ -96,6 +165,15 @@ public class TrackTest extends DBTest {
         assertEquals(connectionCount, DB.getConnectionCount());
     }
 
+    @Test
+    void testListingAPageIsOneQuery() {
+        long connectionCount = DB.getConnectionCount();
+        List<Track> tracks = Track.all(2, 10);
+        assertEquals(10, tracks.size());
+        assertEquals("AC/DC", tracks.get(0).getArtistName());
+        assertEquals(connectionCount + 1, DB.getConnectionCount());
+    }
+
     @Test
     void testOrderByWorks() {
         Track track = Track.all(1, 1, "Milliseconds").get(0);
@@ -130,4 +208,196 @@ public class TrackTest extends DBTest {
 
     }
 
+    @Test
+    void testSearchMatchesWordPrefixesAcrossTrackAlbumAndArtist() {
+        List<Track> stairway = Track.search(1, 10, null, "stairw heav");
+        assertEquals(3, stairway.size());
+        for (Track track : stairway) {
+            assertEquals("Stairway To Heaven", track.getName());
+        }
+        // the artist name alone is enough, plus Dread Zeppelin's Un-Led-Ed
+        assertEquals(115, Track.search(1, 200, null, "led zep").size());
+        assertEquals(10, Track.search(2, 10, null, "led zep").size());
+        assertNotEquals(Track.search(1, 10, null, "led zep").get(0), Track.search(2, 10, null, "led zep").get(0));
+        // a match on the track name outranks one on the artist
+        assertEquals("Stairway To Heaven", Track.search(1, 10, null, "stairway zeppelin").get(0).getName());
+    }
+
+    @Test
+    void testSearchIgnoresQuerySyntax() {
+        assertEquals(10, Track.search(1, 10, null, "\"  ").size());
+        assertEquals(3, Track.search(1, 10, null, "stairway: (heav*").size());
+        assertEquals("\"led\"* \"zep\"*", Track.matchQuery("Led-Zep", null).toLowerCase());
+        assertEquals("Name : (\"x\"*)", Track.matchQuery("x", "Name"));
+        assertNull(Track.matchQuery(" ", "Name"));
+    }
+
+    @Test
+    void testSearchIndexFollowsWrites() {
+        Track track = Track.find(1);
+        track.setName("Quixotic Anthem");
+        assertTrue(track.update());
+        List<Track> found = Track.search(1, 10, null, "quixot");
+        assertEquals(1, found.size());
+        assertEquals(1L, found.get(0).getTrackId());
+        // still found through its album title
+        assertTrue(Track.search(1, 50, null, "salute").stream().anyMatch(t -> t.getTrackId() == 1L));
+
+        Artist artist = Artist.find(22);
+        artist.setName("Zebedee");
+        assertTrue(artist.update());
+        assertEquals(114, Track.search(1, 200, null, "zebedee").size());
+        assertEquals(0, Track.search(1, 200, null, "stairway led").size());
+
+        Track created = new Track();
+        created.setName("Xylophone Nocturne");
+        created.setAlbum(Album.find(1));
+        created.create();
+        assertEquals(1, Track.search(1, 10, null, "xyloph").size());
+        created.delete();
+        assertEquals(0, Track.search(1, 10, null, "xyloph").size());
+    }
+
+    @Test
+    void testAdvancedSearchOnlyMatchesTrackNames() {
+        assertEquals(0, Track.advancedSearch(1, 10, "zeppelin", null, null, null, null).size());
+        assertEquals(3, Track.advancedSearch(1, 10, "stairway", null, null, null, null).size());
+        assertEquals(3, Track.advancedSearch(1, 10, "stairway", 22, null, null, null).size());
+        assertEquals(0, Track.advancedSearch(1, 10, "stairway", 1, null, null, null).size());
+        assertEquals(10, Track.advancedSearch(1, 10, null, 22, null, null, null).size());
+    }
+
+    @Test
+    void testAdvancedSearchAppliesEveryFilter() {
+        List<Track> tracks = Track.advancedSearch(1, 100, null, 22, 131, 1, 1, 400, 200);
+        assertFalse(tracks.isEmpty());
+        for (Track track : tracks) {
+            assertEquals(131L, track.getAlbumId());
+            assertEquals(1L, track.getGenreId());
+            assertEquals(1L, track.getMediaTypeId());
+            assertTrue(track.getMilliseconds() >= 200_000 && track.getMilliseconds() <= 400_000);
+        }
+        assertEquals(0, Track.advancedSearch(1, 100, null, 1, 131, null, null, null, null).size());
+        assertEquals(3, Track.advancedSearch(1, 10, "stairway", null, null, 1, null, null, null).size());
+        assertEquals(0, Track.advancedSearch(1, 10, "stairway", null, null, 2, null, null, null).size());
+    }
+
+    // every combination of filters has to start from an index, never a scan of tracks, albums or artists
+    @Test
+    void testAdvancedSearchFiltersAreIndexed() {
+        for (int filters = 1; filters < 1 << 7; filters++) {
+            List<Object> args = new ArrayList<>();
+            String query = Track.advancedSearchQuery(args,
+                    (filters & 1) != 0 ? "love" : null,
+                    (filters & 2) != 0 ? 22 : null,
+                    (filters & 4) != 0 ? 131 : null,
+                    (filters & 8) != 0 ? 1 : null,
+                    (filters & 16) != 0 ? 1 : null,
+                    (filters & 32) != 0 ? 400 : null,
+                    (filters & 64) != 0 ? 200 : null);
+            List<String> plan = explain(query, args);
+            for (String step : plan) {
+                assertFalse(step.matches("SCAN (TABLE )?(tracks|albums|artists)\\b.*"),
+                        "filters " + Integer.toBinaryString(filters) + " scan: " + plan);
+            }
+        }
+    }
+
+    @Test
+    void testCursorPagingFollowsMultiColumnSorts() {
+        for (String spec : new String[]{"UnitPrice,-Name", "-Bytes", "name desc, Milliseconds"}) {
+            List<Long> expected = ids(Track.all(1, 4000, spec));
+            List<Long> paged = new ArrayList<>();
+            CursorList<Track> tracks = Track.all((Cursor) null, 700, spec);
+            paged.addAll(ids(tracks));
+            while (tracks.getNextCursor() != null) {
+                tracks = Track.all(tracks.getNextCursor(), 700, spec);
+                paged.addAll(ids(tracks));
+            }
+            assertEquals(expected, paged, spec);
+            assertEquals(expected.subList(2800, 3500), ids(Track.all(tracks.getPreviousCursor(), 700, spec)), spec);
+        }
+    }
+
+    @Test
+    void testCursorsOnlyApplyToTheListingOrderTheyCameFrom() {
+        Cursor next = Track.all((Cursor) null, 10, "Milliseconds").getNextCursor();
+        assertEquals(ids(Track.all(1, 10, "Bytes")), ids(Track.all(next, 10, "Bytes")));
+        assertEquals(ids(Track.all(1, 10, "-Milliseconds")), ids(Track.all(next, 10, "-Milliseconds")));
+        assertEquals(ids(Track.all(2, 10, "Milliseconds")), ids(Track.all(next, 10, "Milliseconds")));
+    }
+
+    // Bytes is nullable, NULLs sort first going up and last going down
+    @Test
+    void testCursorPagingCrossesNullKeys() {
+        executeUpdate("UPDATE tracks SET Bytes = NULL WHERE TrackId % 7 = 0");
+        for (String spec : new String[]{"Bytes", "-Bytes", "Milliseconds,-Bytes", "-Bytes,Name"}) {
+            List<Long> expected = ids(Track.all(1, 4000, spec));
+            List<Long> paged = new ArrayList<>();
+            CursorList<Track> tracks = Track.all((Cursor) null, 300, spec);
+            paged.addAll(ids(tracks));
+            while (tracks.getNextCursor() != null) {
+                tracks = Track.all(tracks.getNextCursor(), 300, spec);
+                paged.addAll(ids(tracks));
+            }
+            assertEquals(expected, paged, spec);
+            List<Long> backward = new ArrayList<>(ids(tracks));
+            while (tracks.getPreviousCursor() != null) {
+                tracks = Track.all(tracks.getPreviousCursor(), 300, spec);
+                backward.addAll(0, ids(tracks));
+            }
+            assertEquals(expected, backward, spec);
+        }
+    }
+
+    @Test
+    void testOrderByIgnoresAnythingButTheSortColumns() {
+        assertEquals(ids(Track.all(1, 10)), ids(Track.all(1, 10, "TrackId; DROP TABLE tracks")));
+        assertEquals(ids(Track.all(1, 10)), ids(Track.all(1, 10, "Composer")));
+        assertEquals(3503, Track.count());
+    }
+
+    // a sorted page is read in index order, deep pages seek to the cursor rather than sorting tracks
+    @Test
+    void testSortedPagesReadAnIndex() {
+        String[] specs = {null, "Milliseconds", "-Milliseconds", "Bytes", "-Bytes", "UnitPrice", "-UnitPrice",
+                "Name", "-Name", "Milliseconds,-Bytes", "-Name,UnitPrice"};
+        for (String spec : specs) {
+            String[] keys = Track.sortSpec(spec).getTerms().toArray(new String[0]);
+            CursorList<Track> second = Track.all(Track.all((Cursor) null, 10, spec).getNextCursor(), 10, spec);
+            for (Cursor cursor : new Cursor[]{null, second.getNextCursor(), second.getPreviousCursor()}) {
+                List<Object> args = new ArrayList<>();
+                String query = Model.seekQuery(Track.SELECT_TRACKS, List.of(), keys, cursor, 10, args);
+                List<String> plan = explain(query, args);
+                String description = spec + " " + cursor + ": " + plan;
+                boolean multiColumn = keys.length > 2;
+                // a page merged with the NULLs past it only sorts the two pages' rows
+                boolean merged = plan.contains("MERGE (UNION ALL)");
+                for (String step : plan) {
+                    assertFalse(step.contains("TEMP B-TREE") && !(multiColumn && step.contains("RIGHT PART")) && !merged, description);
+                    assertFalse(step.matches("SCAN (TABLE )?tracks") && cursor != null, description);
+                }
+                if (cursor != null) {
+                    assertTrue(plan.stream().anyMatch(step -> step.startsWith("SEARCH TABLE tracks")), description);
+                }
+            }
+        }
+    }
+
+    private static List<String> explain(String query, List<Object> args) {
+        try (Connection conn = DB.connect();
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + query)) {
+            for (int i = 0; i < args.size(); i++) {
+                stmt.setObject(i + 1, args.get(i));
+            }
+            ResultSet results = stmt.executeQuery();
+            List<String> plan = new ArrayList<>();
+            while (results.next()) {
+                plan.add(results.getString("detail"));
+            }
+            return plan;
+        } catch (SQLException sqlException) {
+            throw new RuntimeException(sqlException);
+        }
+    }
 }
@@ -0,0 +1,28 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Artist;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionalGetTest extends DBTest {
+
+    @Test
+    void testIfNoneMatchAcceptsListsAndWeakTags() {
+        assertTrue(ConditionalGet.matches("\"abc-1\"", "\"abc-1\""));
+        assertTrue(ConditionalGet.matches("\"x\", W/\"abc-1\"", "\"abc-1\""));
+        assertTrue(ConditionalGet.matches("*", "\"abc-1\""));
+        assertFalse(ConditionalGet.matches("\"abc-0\"", "\"abc-1\""));
+        assertFalse(ConditionalGet.matches(null, "\"abc-1\""));
+    }
+
+    @Test
+    void testWritesChangeTheModelVersion() {
+        long version = ModelVersions.get(Artist.class);
+        Artist artist = Artist.find(1);
+        artist.setName("Changed");
+        assertTrue(artist.update());
+        assertTrue(ModelVersions.get(Artist.class) > version);
+    }
+}
@@ -0,0 +1,119 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPool newPool(int max) {
+        return new ConnectionPool(() -> DriverManager.getConnection("jdbc:sqlite::memory:"), 0, max, 0, 100, 2);
+    }
+
+    @Test
+    void testClosedConnectionsAreReused() throws SQLException {
+        ConnectionPool pool = newPool(2);
+        for (int i = 0; i < 5; i++) {
+            try (Connection conn = pool.borrow()) {
+                assertFalse(conn.isClosed());
+            }
+        }
+        assertEquals(1, pool.getPhysicalCount());
+        assertEquals(5, pool.getBorrowCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testPoolIsBounded() throws SQLException {
+        ConnectionPool pool = newPool(1);
+        try (Connection conn = pool.borrow()) {
+            assertThrows(SQLException.class, pool::borrow);
+        }
+        try (Connection conn = pool.borrow()) {
+            assertEquals(1, pool.getSize());
+        }
+    }
+
+    @Test
+    void testWarmUpOpensTheMinimum() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(() -> DriverManager.getConnection("jdbc:sqlite::memory:"), 2, 3, 0, 100);
+        pool.warmUp();
+        assertEquals(2, pool.getPhysicalCount());
+        assertEquals(2, pool.getIdleCount());
+        pool.warmUp();
+        try (Connection conn = pool.borrow()) {
+            assertEquals(2, pool.getPhysicalCount());
+        }
+    }
+
+    @Test
+    void testStatementsLeftOpenAreClosedWithTheLease() throws SQLException {
+        ConnectionPool pool = newPool(1);
+        Connection conn = pool.borrow();
+        Statement leaked = conn.createStatement();
+        // enough closed statements in between to prune the lease's list a few times
+        for (int i = 0; i < 200; i++) {
+            conn.createStatement().close();
+        }
+        assertFalse(leaked.isClosed());
+        conn.close();
+        assertTrue(leaked.isClosed());
+    }
+
+    @Test
+    void testClosedLeaseCannotBeUsed() throws SQLException {
+        ConnectionPool pool = newPool(1);
+        Connection conn = pool.borrow();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+    }
+
+    @Test
+    void testClearDiscardsIdleConnections() throws SQLException {
+        ConnectionPool pool = newPool(2);
+        pool.borrow().close();
+        pool.clear();
+        assertEquals(0, pool.getSize());
+        pool.borrow().close();
+        assertEquals(2, pool.getPhysicalCount());
+    }
+
+    @Test
+    void testPreparedStatementsAreCached() throws SQLException {
+        ConnectionPool pool = newPool(1);
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = pool.borrow();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT ? AS Value")) {
+                stmt.setInt(1, i);
+                ResultSet results = stmt.executeQuery();
+                assertTrue(results.next());
+                assertEquals(i, results.getInt("Value"));
+            }
+        }
+        assertEquals(1, pool.getStatementCacheMisses());
+        assertEquals(2, pool.getStatementCacheHits());
+    }
+
+    @Test
+    void testNestedUseOfTheSameQueryGetsItsOwnStatement() throws SQLException {
+        ConnectionPool pool = newPool(1);
+        try (Connection conn = pool.borrow();
+             PreparedStatement outer = conn.prepareStatement("SELECT 1 AS Value");
+             PreparedStatement inner = conn.prepareStatement("SELECT 1 AS Value")) {
+            assertNotSame(outer, inner);
+            ResultSet outerResults = outer.executeQuery();
+            ResultSet innerResults = inner.executeQuery();
+            assertTrue(outerResults.next());
+            assertTrue(innerResults.next());
+        }
+        assertEquals(2, pool.getStatementCacheMisses());
+    }
+}
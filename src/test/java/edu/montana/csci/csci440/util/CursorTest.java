@@ -0,0 +1,32 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorTest {
+
+    @Test
+    void testRoundTripsValuesWithTheirTypes() {
+        Cursor cursor = Cursor.before(343719, -3.25, "AC/DC | \"Live\"", null);
+        Cursor parsed = Cursor.parse(cursor.encode());
+        assertTrue(parsed.isBackward());
+        assertEquals(Arrays.asList(343719L, -3.25, "AC/DC | \"Live\"", null), parsed.getValues());
+        assertFalse(parsed.reverse().isBackward());
+        assertTrue(cursor.encode().matches("[A-Za-z0-9_-]+"));
+        assertNull(parsed.getOrder());
+        assertEquals("1f3c", Cursor.parse(cursor.in("1f3c").encode()).getOrder());
+        assertEquals("1f3c", Cursor.parse(cursor.in("1f3c").reverse().encode()).getOrder());
+    }
+
+    @Test
+    void testMangledTokensAreTheFirstPage() {
+        assertNull(Cursor.parse(null));
+        assertNull(Cursor.parse(""));
+        assertNull(Cursor.parse("not a cursor!"));
+        assertNull(Cursor.parse(Cursor.after(1L).encode().substring(2)));
+        assertNull(Cursor.parse("YQ"));
+    }
+}
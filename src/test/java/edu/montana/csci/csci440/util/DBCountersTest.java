@@ -0,0 +1,60 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Track;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DBCountersTest extends DBTest {
+
+    @AfterEach
+    void stopCounting() {
+        DB.endCounting();
+    }
+
+    @Test
+    void testCountsTheCurrentThreadsWork() {
+        DB.Counters counters = DB.beginCounting();
+        List<Track> tracks = Track.all(1, 10);
+        assertEquals(10, tracks.size());
+        assertEquals(1, counters.getConnections());
+        assertEquals(1, counters.getStatementsPrepared());
+        assertEquals(1, counters.getStatementsExecuted());
+        assertEquals(10, counters.getRowsRead());
+        assertTrue(counters.getJdbcMillis() > 0);
+        assertSame(counters, DB.endCounting());
+        Track.all(2, 10);
+        assertEquals(10, counters.getRowsRead(), "nothing is counted after endCounting");
+    }
+
+    @Test
+    void testOtherThreadsDoNotShowUpInTheRequestsCounts() throws InterruptedException {
+        long connections = DB.getConnectionCount();
+        long rows = DB.getRowsRead();
+        DB.Counters counters = DB.beginCounting();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 25; j++) {
+                    Track.all(1, 5);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Track.all(1, 10);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, counters.getConnections());
+        assertEquals(10, counters.getRowsRead());
+        // the global totals see every thread's work, without losing increments
+        assertEquals(connections + 101, DB.getConnectionCount());
+        assertEquals(rows + 510, DB.getRowsRead());
+    }
+}
@@ -0,0 +1,84 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Artist;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityCacheTest extends DBTest {
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        EntityCache cache = new EntityCache("test", 2, 60_000);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.get(1L);
+        cache.put(3L, "three");
+        assertEquals("one", cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testExpiredEntriesAreMisses() throws InterruptedException {
+        EntityCache cache = new EntityCache("test", 10, 5);
+        cache.put(1L, "one");
+        Thread.sleep(20);
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testFindsAreSharedAcrossCallsAsCopies() {
+        long connectionCount = DB.getConnectionCount();
+        Artist first = Artist.find(1);
+        Artist second = Artist.find(1);
+        assertEquals(connectionCount + 1, DB.getConnectionCount());
+        assertNotSame(first, second);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void testWritesInvalidateTheCache() {
+        Artist artist = Artist.find(1);
+        artist.setName("Renamed");
+        assertTrue(artist.update());
+        assertEquals("Renamed", Artist.find(1).getName());
+    }
+
+    // a read only unit reads from the snapshot it started with, a write committed since must not be undone
+    // by it caching the row it saw
+    @Test
+    void testRowsReadFromAnOlderSnapshotAreNotShared() throws InterruptedException {
+        DB.beginUnitOfWork(true);
+        try {
+            Artist.find(2);
+            Thread writer = new Thread(() -> {
+                Artist artist = Artist.find(1);
+                artist.setName("Renamed");
+                assertTrue(artist.update());
+            });
+            writer.start();
+            writer.join();
+            assertEquals("AC/DC", Artist.find(1).getName());
+        } finally {
+            DB.endUnitOfWork();
+        }
+        assertEquals("Renamed", Artist.find(1).getName());
+    }
+
+    @Test
+    void testRolledBackWritesDoNotLeakIntoTheCache() {
+        DB.beginUnitOfWork();
+        Artist artist = Artist.find(1);
+        artist.setName("Rolled Back");
+        assertTrue(artist.update());
+        assertEquals("Rolled Back", Artist.find(1).getName());
+        DB.endUnitOfWork();
+
+        assertEquals("AC/DC", Artist.find(1).getName());
+    }
+}
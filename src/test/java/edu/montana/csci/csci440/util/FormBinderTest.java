@@ -0,0 +1,81 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.model.Employee;
+import edu.montana.csci.csci440.model.Track;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FormBinderTest {
+
+    @Test
+    void testValuesAreConvertedToTheSetterType() throws Throwable {
+        Track track = new Track();
+        FormBinder binder = FormBinder.forClass(Track.class);
+        binder.bind(track, "Name", "Example");
+        binder.bind(track, "Milliseconds", "1000");
+        binder.bind(track, "UnitPrice", "0.99");
+        assertEquals("Example", track.getName());
+        assertEquals(Long.valueOf(1000), track.getMilliseconds());
+        assertEquals(new BigDecimal("0.99"), track.getUnitPrice());
+    }
+
+    @Test
+    void testInvalidDecimalsBecomeNull() throws Throwable {
+        Track track = new Track();
+        track.setUnitPrice(BigDecimal.ONE);
+        FormBinder.forClass(Track.class).bind(track, "UnitPrice", "not a number");
+        assertNull(track.getUnitPrice());
+    }
+
+    @Test
+    void testDatesAreParsedDayFirst() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(parseDate("3/11/2021"));
+        assertEquals(3, calendar.get(Calendar.DAY_OF_MONTH));
+        assertEquals(Calendar.NOVEMBER, calendar.get(Calendar.MONTH));
+        assertEquals(2021, calendar.get(Calendar.YEAR));
+        assertEquals(parseDate("03/11/2021"), parseDate("3/11/2021"));
+    }
+
+    // the same dates the lenient SimpleDateFormat("dd/MM/yyyy") the binder used to call gives
+    @Test
+    void testDatesParseLikeTheLenientDateFormat() throws ParseException {
+        SimpleDateFormat lenient = new SimpleDateFormat("dd/MM/yyyy");
+        for (String value : List.of("3/11/2021", "31/02/2021", "0/1/2021", "15/13/2020", "3/11/21",
+                "3/11/2021 10:30", "3/11/2021abc", "003/011/02021")) {
+            assertEquals(lenient.parse(value), parseDate(value), value);
+        }
+        assertThrows(RuntimeException.class, () -> parseDate("yesterday"));
+    }
+
+    @Test
+    void testUnknownPropertiesAreRejected() {
+        assertThrows(IllegalStateException.class, () -> FormBinder.forClass(Employee.class).bind(new Employee(), "Nope", "x"));
+    }
+
+    private static Date parseDate(String value) {
+        DateHolder holder = new DateHolder();
+        try {
+            FormBinder.forClass(DateHolder.class).bind(holder, "Date", value);
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+        return holder.date;
+    }
+
+    public static class DateHolder {
+        private Date date;
+
+        public void setDate(Date date) {
+            this.date = date;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipTest {
+
+    @Test
+    void testCompressedBodiesRoundTrip() throws IOException {
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            page.append("<tr><td>Motörhead ").append(i).append("</td></tr>\n");
+        }
+        byte[] bytes = page.toString().getBytes(StandardCharsets.UTF_8);
+        // run it twice so the second one uses a deflater that came back from the pool
+        for (int i = 0; i < 2; i++) {
+            byte[] compressed = Gzip.compress(bytes);
+            assertTrue(compressed.length < bytes.length / 4);
+            assertEquals(page.toString(), gunzip(compressed));
+        }
+    }
+
+    @Test
+    void testStreamCountsBothSides() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Gzip.GzipOutputStream gzip = Gzip.stream(out);
+        byte[] chunk = "<li>Employee</li>\n".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 1_000; i++) {
+            gzip.write(chunk, 0, chunk.length);
+        }
+        gzip.close();
+        gzip.close();
+        assertEquals(chunk.length * 1_000, gzip.getUncompressedBytes());
+        assertEquals(out.size(), gzip.getCompressedBytes());
+        assertEquals("<li>Employee</li>\n".repeat(1_000), gunzip(out.toByteArray()));
+        assertThrows(IOException.class, () -> gzip.write(chunk, 0, chunk.length));
+    }
+
+    @Test
+    void testDeferredStreamSendsShortBodiesAsTheyAre() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicBoolean compressing = new AtomicBoolean();
+        Gzip.DeferredOutputStream deferred = Gzip.deferred(out, () -> compressing.set(true));
+        byte[] page = "<p>short</p>".getBytes(StandardCharsets.UTF_8);
+        deferred.write(page, 0, page.length);
+        deferred.flush();
+        assertEquals(0, out.size());
+        deferred.close();
+        assertFalse(compressing.get());
+        assertFalse(deferred.isCompressed());
+        assertEquals("<p>short</p>", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDeferredStreamCompressesOnceOverTheThreshold() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicBoolean compressing = new AtomicBoolean();
+        Gzip.DeferredOutputStream deferred = Gzip.deferred(out, () -> {
+            // nothing may have been written before the caller gets to set its headers
+            assertEquals(0, out.size());
+            compressing.set(true);
+        });
+        byte[] chunk = "<li>Employee</li>\n".getBytes(StandardCharsets.UTF_8);
+        int chunks = Gzip.MIN_BYTES / chunk.length + 10;
+        for (int i = 0; i < chunks; i++) {
+            deferred.write(chunk, 0, chunk.length);
+        }
+        deferred.close();
+        assertTrue(compressing.get());
+        assertTrue(deferred.isCompressed());
+        assertEquals((long) chunk.length * chunks, deferred.getUncompressedBytes());
+        assertEquals("<li>Employee</li>\n".repeat(chunks), gunzip(out.toByteArray()));
+    }
+
+    @Test
+    void testAcceptEncodingNegotiation() {
+        assertTrue(Gzip.accepts("gzip, deflate, br"));
+        assertTrue(Gzip.accepts("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(Gzip.accepts("*"));
+        assertFalse(Gzip.accepts(null));
+        assertFalse(Gzip.accepts("identity"));
+        assertFalse(Gzip.accepts("br, deflate"));
+        assertFalse(Gzip.accepts("gzip;q=0"));
+        assertFalse(Gzip.accepts("*, gzip;q=0"));
+        assertFalse(Gzip.accepts("*;q=0"));
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistogramTest {
+
+    @Test
+    void testPercentilesAreWithinTheBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(5_000_050_000L, histogram.getSum());
+        assertEquals(50_000, histogram.percentile(0.5), 50_000 * 0.07);
+        assertEquals(99_000, histogram.percentile(0.99), 99_000 * 0.07);
+        assertTrue(histogram.percentile(1.0) >= 100_000);
+    }
+
+    @Test
+    void testBucketsCoverEveryValueInOrder() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = Histogram.indexOf(value);
+            assertTrue(index == previous || index == previous + 1, "bucket for " + value);
+            assertTrue(Histogram.highestValueAt(index) >= value);
+            previous = index;
+        }
+        assertTrue(Histogram.indexOf(Long.MAX_VALUE) > previous);
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueAt(Histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testEmptyHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.percentile(0.99));
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(0.5));
+    }
+}
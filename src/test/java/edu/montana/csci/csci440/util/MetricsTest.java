@@ -0,0 +1,63 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Track;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest extends DBTest {
+
+    @AfterEach
+    void clearMetrics() {
+        Metrics.endRequest();
+        DB.endCounting();
+        Metrics.clear();
+    }
+
+    @Test
+    void testRoutesGroupNumericIds() {
+        assertEquals("GET /albums/:id/edit", Metrics.routeFor("GET", "/albums/12/edit", 200));
+        assertEquals("GET /tracks/:id", Metrics.routeFor("GET", "/tracks/3503", 200));
+        assertEquals("GET /tracks/search", Metrics.routeFor("GET", "/tracks/search", 200));
+        assertEquals("GET (unmatched)", Metrics.routeFor("GET", "/nothing/here", 404));
+    }
+
+    @Test
+    void testFailedRequestsDoNotAddRoutes() {
+        assertEquals("GET (failed)", Metrics.routeFor("GET", "/albums/abc", 500));
+        Metrics.recordRequest(Metrics.routeFor("GET", "/albums/1", 200), 200, 1_000_000, null, null);
+        assertEquals("GET /albums/:id", Metrics.routeFor("GET", "/albums/2", 500));
+        for (int i = 0; i < 1000; i++) {
+            Metrics.recordRequest("GET /generated/" + i, 200, 1_000_000, null, null);
+        }
+        assertEquals(201, Metrics.getRoutes().size());
+        assertEquals(801, Metrics.getRoutes().get("(other)").getCount());
+    }
+
+    @Test
+    void testRenderTimeIsCountedForTheCurrentRequest() {
+        Metrics.RequestMetrics request = Metrics.beginRequest();
+        Metrics.recordRender(2_000_000);
+        assertSame(request, Metrics.endRequest());
+        Metrics.recordRender(5_000_000);
+        assertEquals(2.0, request.getRenderMillis());
+    }
+
+    @Test
+    void testPrometheusOutput() {
+        DB.Counters counters = DB.beginCounting();
+        Track.all(1, 10);
+        Metrics.recordRequest("GET /tracks", 200, 12_000_000, null, DB.endCounting());
+        Metrics.recordRequest("GET /tracks", 500, 3_000_000, null, null);
+        String text = Metrics.prometheus();
+        assertTrue(text.contains("# TYPE csci440_http_request_duration_seconds summary"));
+        assertTrue(text.contains("csci440_http_request_duration_seconds_count{route=\"GET /tracks\"} 2"));
+        assertTrue(text.contains("csci440_http_request_duration_seconds{route=\"GET /tracks\",quantile=\"0.99\"} 0.01"));
+        assertTrue(text.contains("csci440_http_request_errors_total{route=\"GET /tracks\"} 1"));
+        assertTrue(text.contains("csci440_request_sql_queries_total{route=\"GET /tracks\"} " + counters.getStatementsExecuted()));
+        assertTrue(text.contains("csci440_request_sql_rows_total{route=\"GET /tracks\"} 10"));
+        assertTrue(text.contains("csci440_request_sql_rows_total{route=\"GET /tracks\"} 10"));
+    }
+}
@@ -0,0 +1,43 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Album;
+import edu.montana.csci.csci440.model.Artist;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCacheTest extends DBTest {
+
+    @AfterEach
+    void clearPages() {
+        PageCache.clear();
+    }
+
+    @Test
+    void testStoredPagesAreServedByKey() {
+        PageCache.store(PageCache.lookup("/albums?page=1", Album.class, Artist.class), "page one");
+        assertEquals("page one", PageCache.lookup("/albums?page=1", Album.class, Artist.class).getBody());
+        assertNull(PageCache.lookup("/albums?page=2", Album.class, Artist.class).getBody());
+    }
+
+    @Test
+    void testWritesToATaggedModelInvalidatePages() {
+        PageCache.store(PageCache.lookup("/albums", Album.class, Artist.class), "albums");
+        Artist artist = Artist.find(1);
+        artist.setName("Renamed");
+        assertTrue(artist.update());
+        assertNull(PageCache.lookup("/albums", Album.class, Artist.class).getBody());
+    }
+
+    @Test
+    void testPagesRenderedBeforeAWriteAreStale() {
+        PageCache.Lookup lookup = PageCache.lookup("/artists", Artist.class);
+        Artist artist = Artist.find(1);
+        artist.setName("Renamed");
+        assertTrue(artist.update());
+        PageCache.store(lookup, "rendered while the write happened");
+        assertNull(PageCache.lookup("/artists", Artist.class).getBody());
+    }
+}
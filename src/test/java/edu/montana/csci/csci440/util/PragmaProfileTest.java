@@ -0,0 +1,52 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PragmaProfileTest extends DBTest {
+
+    @Test
+    void testPresetIsChosenByName() {
+        Properties properties = new Properties();
+        properties.setProperty("db.profile", "bulk-load");
+        PragmaProfile profile = PragmaProfile.fromProperties(properties);
+        assertEquals(PragmaProfile.BULK_LOAD, profile.getName());
+        assertEquals("OFF", profile.getPragmas().get("synchronous"));
+    }
+
+    @Test
+    void testPragmasCanBeOverridden() {
+        Properties properties = new Properties();
+        properties.setProperty("db.pragma.busy_timeout", "1234");
+        PragmaProfile profile = PragmaProfile.fromProperties(properties);
+        assertEquals(PragmaProfile.WEB, profile.getName());
+        assertEquals("1234", profile.getPragmas().get("busy_timeout"));
+        assertEquals("WAL", profile.getPragmas().get("journal_mode"));
+    }
+
+    @Test
+    void testInvalidPragmasAreRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("db.pragma.cache_size", "1; DROP TABLE tracks");
+        assertThrows(IllegalArgumentException.class, () -> PragmaProfile.fromProperties(properties));
+    }
+
+    @Test
+    void testWebProfileIsAppliedToConnections() throws SQLException {
+        try (Connection conn = DB.connect();
+             Statement stmt = conn.createStatement()) {
+            ResultSet journalMode = stmt.executeQuery("PRAGMA journal_mode");
+            assertEquals("wal", journalMode.getString(1));
+            ResultSet foreignKeys = stmt.executeQuery("PRAGMA foreign_keys");
+            assertEquals(1, foreignKeys.getInt(1));
+        }
+    }
+}
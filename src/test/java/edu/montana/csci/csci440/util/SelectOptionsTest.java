@@ -0,0 +1,58 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Artist;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectOptionsTest extends DBTest {
+
+    @Test
+    void testOnlyTheSelectedOptionIsMarked() throws Throwable {
+        String select = SelectOptions.forModel("Artist", "Name").render("ArtistId", 1L, true);
+        assertTrue(select.startsWith("<select style='max-width:200px' name='ArtistId'>\n<option></option>"));
+        assertTrue(select.contains("  <option value='1'  selected>AC/DC</option>\n"));
+        assertTrue(select.contains("  <option value='2' >Accept</option>\n"));
+        assertEquals(1, select.split("selected", -1).length - 1);
+    }
+
+    @Test
+    void testOptionsAreRenderedOnce() throws Throwable {
+        SelectOptions options = SelectOptions.forModel("Genre", "Name");
+        options.render("GenreId", 1, false);
+        long connectionCount = DB.getConnectionCount();
+        options.render("GenreId", 2, false);
+        assertEquals(connectionCount, DB.getConnectionCount());
+    }
+
+    @Test
+    void testWritesRebuildTheOptions() throws Throwable {
+        SelectOptions options = SelectOptions.forModel("Artist", "Name");
+        options.render("ArtistId", null, false);
+        Artist artist = Artist.find(1);
+        artist.setName("Renamed");
+        assertTrue(artist.update());
+        assertTrue(options.render("ArtistId", null, false).contains(">Renamed</option>"));
+    }
+
+    @Test
+    void testOptionsReadFromAnOlderSnapshotAreNotKept() throws Throwable {
+        SelectOptions options = SelectOptions.forModel("Artist", "Name");
+        DB.beginUnitOfWork(true);
+        try {
+            Artist.find(2);
+            Thread writer = new Thread(() -> {
+                Artist artist = Artist.find(1);
+                artist.setName("Renamed");
+                assertTrue(artist.update());
+            });
+            writer.start();
+            writer.join();
+            assertTrue(options.render("ArtistId", null, false).contains(">AC/DC</option>"));
+        } finally {
+            DB.endUnitOfWork();
+        }
+        assertTrue(options.render("ArtistId", null, false).contains(">Renamed</option>"));
+    }
+}
@@ -0,0 +1,130 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowQueriesTest extends DBTest {
+
+    @Test
+    void testSlowRunsKeepParametersAndPlan() throws SQLException {
+        SlowQueries slowQueries = new SlowQueries(0, 10, true);
+        try (Connection connection = DB.connect()) {
+            slowQueries.record("SELECT * FROM tracks WHERE Name LIKE ?", 5_000_000, Map.of(1, "%love%"), connection);
+            slowQueries.record("SELECT * FROM tracks WHERE TrackId = ?", 1_000_000, Map.of(1, 42), connection);
+        }
+        List<SlowQueries.SlowQuery> recent = slowQueries.getRecent();
+        assertEquals(2, recent.size());
+        assertEquals("SELECT * FROM tracks WHERE TrackId = ?", recent.get(0).getSql());
+        assertEquals("[42]", recent.get(0).getParameters());
+        assertTrue(recent.get(0).getPlan().contains("SEARCH"), recent.get(0).getPlan());
+        assertEquals("[%love%]", recent.get(1).getParameters());
+        assertTrue(recent.get(1).getPlan().contains("SCAN"), recent.get(1).getPlan());
+        assertEquals(5.0, recent.get(1).getMillis());
+    }
+
+    // shown parameters are whatever was typed into a form, the admin page must not render them as markup
+    @Test
+    void testAdminPageEscapesWhatWasRecorded() throws SQLException {
+        SlowQueries slowQueries = new SlowQueries(0, 10, true);
+        try (Connection connection = DB.connect()) {
+            slowQueries.record("SELECT * FROM customers WHERE FirstName = ? AND CustomerId < ?", 1_000_000,
+                    new TreeMap<>(Map.of(1, "<script>alert(1)</script>", 2, 10)), connection);
+        }
+        Map<String, Object> model = new HashMap<>();
+        model.put("web", new Web());
+        model.put("byTotal", slowQueries.getTopByTotal(20));
+        model.put("byP99", slowQueries.getTopByP99(20));
+        model.put("recent", slowQueries.getRecent());
+        model.put("slowCount", slowQueries.getSlowCount());
+        model.put("thresholdMillis", slowQueries.getThresholdMillis());
+        String html = Templates.render("templates/admin/slow_queries.vm", model);
+        assertFalse(html.contains("<script>"), html);
+        assertTrue(html.contains("[&lt;script&gt;alert(1)&lt;/script&gt;, 10]"), html);
+        assertTrue(html.contains("AND CustomerId &lt; ?</code>"), html);
+    }
+
+    @Test
+    void testParametersAreRedactedByDefault() throws SQLException {
+        SlowQueries slowQueries = new SlowQueries(0, 10);
+        try (Connection connection = DB.connect()) {
+            slowQueries.record("SELECT * FROM customers WHERE Email = ? AND SupportRepId = ?", 1_000_000,
+                    new TreeMap<>(Map.of(1, "luisg@embraer.com.br", 2, 3)), connection);
+        }
+        SlowQueries.SlowQuery slow = slowQueries.getRecent().get(0);
+        assertEquals("[?String, ?Integer]", slow.getParameters());
+        assertTrue(slow.getPlan().contains("customers"), slow.getPlan());
+
+        SlowQueries shown = new SlowQueries(0, 10, true);
+        try (Connection connection = DB.connect()) {
+            shown.record("SELECT * FROM tracks WHERE Name = ?", 1_000_000, Map.of(1, "x".repeat(100)), connection);
+        }
+        assertEquals("[" + "x".repeat(40) + "...]", shown.getRecent().get(0).getParameters());
+    }
+
+    @Test
+    void testRecentRunsAreARingBuffer() throws SQLException {
+        SlowQueries slowQueries = new SlowQueries(10, 3);
+        try (Connection connection = DB.connect()) {
+            for (int i = 1; i <= 5; i++) {
+                slowQueries.record("SELECT " + i, i * 10_000_000L, Map.of(), connection);
+            }
+            slowQueries.record("SELECT 0", 1_000_000, Map.of(), connection);
+        }
+        assertEquals(5, slowQueries.getSlowCount());
+        List<SlowQueries.SlowQuery> recent = slowQueries.getRecent();
+        assertEquals(3, recent.size());
+        assertEquals("SELECT 5", recent.get(0).getSql());
+        assertEquals("SELECT 3", recent.get(2).getSql());
+    }
+
+    @Test
+    void testTopOffendersByTotalAndP99() throws SQLException {
+        SlowQueries slowQueries = new SlowQueries(1_000, 3);
+        try (Connection connection = DB.connect()) {
+            for (int i = 0; i < 100; i++) {
+                slowQueries.record("SELECT often", 2_000_000, Map.of(), connection);
+            }
+            slowQueries.record("SELECT rarely", 50_000_000, Map.of(), connection);
+        }
+        assertEquals("SELECT often", slowQueries.getTopByTotal(1).get(0).getSql());
+        assertEquals("SELECT rarely", slowQueries.getTopByP99(1).get(0).getSql());
+        assertEquals(100, slowQueries.getTopByTotal(2).get(0).getCount());
+        assertEquals(2, slowQueries.getTopByTotal(10).size());
+        assertTrue(slowQueries.getRecent().isEmpty());
+    }
+
+    @Test
+    void testEveryStatementIsTimed() throws SQLException {
+        String sql = "SELECT COUNT(*) AS Count FROM tracks WHERE Milliseconds > ?";
+        long before = countFor(sql);
+        try (Connection connection = DB.connect();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int i = 0; i < 2; i++) {
+                stmt.setLong(1, 100_000 * i);
+                ResultSet results = stmt.executeQuery();
+                assertTrue(results.next());
+            }
+        }
+        assertEquals(before + 2, countFor(sql));
+    }
+
+    private static long countFor(String sql) {
+        for (SlowQueries.QueryStats stats : DB.getSlowQueries().getTopByTotal(Integer.MAX_VALUE)) {
+            if (stats.getSql().equals(sql)) {
+                return stats.getCount();
+            }
+        }
+        return 0;
+    }
+}
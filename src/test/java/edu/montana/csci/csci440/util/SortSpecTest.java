@@ -0,0 +1,31 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortSpecTest {
+
+    private static final Map<String, String> COLUMNS = Map.of("Milliseconds", "t.Milliseconds", "Name", "t.Name");
+
+    @Test
+    void testParsesColumnsAndDirections() {
+        SortSpec spec = SortSpec.parse("milliseconds, Name DESC", COLUMNS, "t.Id");
+        assertEquals(List.of("t.Milliseconds", "t.Name DESC", "t.Id DESC"), spec.getTerms());
+        assertEquals("Milliseconds,-Name", spec.toString());
+        assertEquals("t.Name DESC, t.Milliseconds, t.Id", SortSpec.parse("-Name,Milliseconds asc", COLUMNS, "t.Id").getOrderBy());
+        assertEquals(List.of("t.Id"), SortSpec.parse(null, COLUMNS, "t.Id").getTerms());
+    }
+
+    @Test
+    void testAnythingElseSortsByTheTiebreak() {
+        for (String spec : new String[]{"Bytes", "Name; DROP TABLE t", "Name,Name", "Name sideways", "t.Name", ",", "--Name"}) {
+            SortSpec parsed = SortSpec.parse(spec, COLUMNS, "t.Id");
+            assertEquals(List.of("t.Id"), parsed.getTerms(), spec);
+            assertEquals("", parsed.toString());
+        }
+    }
+}
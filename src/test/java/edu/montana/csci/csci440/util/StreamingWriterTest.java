@@ -0,0 +1,59 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingWriterTest {
+
+    @Test
+    void testLargeOutputIsWrittenInChunks() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            expected.append("<tr><td>").append(i).append("</td></tr>\n");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingWriter writer = StreamingWriter.borrow(out);
+        writer.write(expected.toString());
+        assertTrue(out.size() > 0, "full buffers are written before close");
+        writer.close();
+        writer.release();
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMultiByteCharactersAcrossBufferBoundaries() throws IOException {
+        StringBuilder expected = new StringBuilder("x");
+        for (int i = 0; i < 5_000; i++) {
+            expected.append("Motörhead 🎸 ");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingWriter writer = StreamingWriter.borrow(out);
+        for (int i = 0; i < expected.length(); i++) {
+            writer.write(expected.charAt(i));
+        }
+        writer.close();
+        writer.release();
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testReleasedWritersAreReusedWithoutLeftovers() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        StreamingWriter writer = StreamingWriter.borrow(first);
+        writer.write("abandoned");
+        writer.release();
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        StreamingWriter reused = StreamingWriter.borrow(second);
+        reused.write("fresh");
+        reused.close();
+        reused.release();
+        assertEquals("", first.toString(StandardCharsets.UTF_8));
+        assertEquals("fresh", second.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,29 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemplatesTest {
+
+    @Test
+    void testAllTemplatesPrecompile() {
+        List<String> templates = Templates.precompile();
+        assertTrue(templates.contains("templates/header.vm"));
+        assertTrue(templates.contains("templates/tracks/index.vm"));
+    }
+
+    @Test
+    void testRendersAreTimedPerTemplate() {
+        Map<String, Object> model = new HashMap<>();
+        model.put("error", new RuntimeException("Example"));
+        model.put("stacktrace", "");
+        String html = Templates.render("templates/error.vm", model);
+        assertTrue(html.contains("Example"));
+        assertTrue(Templates.getTimings().get("templates/error.vm").getCount() >= 1);
+    }
+}
@@ -0,0 +1,72 @@
+package edu.montana.csci.csci440.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    @Test
+    void testRanksPrefixesFirstAndToleratesTypos() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "Stairway To Heaven");
+        index.put(2, "Highway To Hell");
+        index.put(3, "The Stairs");
+        index.put(4, "Señor Coconut");
+
+        List<TrigramIndex.Hit> hits = index.search("stair", 10);
+        assertEquals(2, hits.size());
+        // the start of the text over the start of a later word
+        assertEquals(1, hits.get(0).getId());
+        assertEquals(3, hits.get(1).getId());
+        assertEquals(1, index.search("stairwy", 10).get(0).getId());
+        assertEquals(4, index.search("senor", 10).get(0).getId());
+        assertEquals(1, index.search("stair", 1).size());
+        assertTrue(index.search("s", 10).isEmpty());
+        assertTrue(index.search("xyz", 10).isEmpty());
+    }
+
+    @Test
+    void testPutReplacesAndRemoveUnlinks() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(7, "Walk On Water");
+        index.put(7, "Black Dog");
+        assertTrue(index.search("water", 10).isEmpty());
+        assertEquals("Black Dog", index.search("black", 10).get(0).getText());
+        index.remove(7);
+        assertTrue(index.search("black", 10).isEmpty());
+        assertEquals(0, index.size());
+        index.put(8, null);
+        assertNull(index.get(8));
+    }
+
+    @Test
+    void testSearchesNeverSeeAHalfWrittenText() throws InterruptedException {
+        TrigramIndex index = new TrigramIndex();
+        for (int id = 0; id < 500; id++) {
+            index.put(id, "Filler Track " + id);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; running.get(); i++) {
+                index.put(1000, i % 2 == 0 ? "Marching Bands" : "Quiet Evenings");
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 2000 && failure.get() == null; i++) {
+            for (TrigramIndex.Hit hit : index.search("marching bands", 5)) {
+                if (!hit.getText().equals("Marching Bands")) {
+                    failure.set(hit.getText());
+                }
+            }
+        }
+        running.set(false);
+        writer.join();
+        assertNull(failure.get());
+    }
+}
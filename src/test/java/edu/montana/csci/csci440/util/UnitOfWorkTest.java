@@ -0,0 +1,108 @@
+package edu.montana.csci.csci440.util;
+
+import edu.montana.csci.csci440.DBTest;
+import edu.montana.csci.csci440.model.Album;
+import edu.montana.csci.csci440.model.Artist;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnitOfWorkTest extends DBTest {
+
+    @AfterEach
+    void endUnitOfWork() {
+        DB.endUnitOfWork();
+    }
+
+    @Test
+    void testModelCallsShareOneConnection() {
+        UnitOfWork unitOfWork = DB.beginUnitOfWork();
+        Artist.find(1);
+        Artist.find(2);
+        Artist.all(1, 10);
+        assertEquals(3, unitOfWork.getConnections());
+        assertEquals(1, unitOfWork.getPhysicalConnections());
+    }
+
+    @Test
+    void testUncommittedWorkIsRolledBack() {
+        DB.beginUnitOfWork();
+        Artist artist = Artist.find(1);
+        artist.setName("Rolled Back");
+        assertTrue(artist.update());
+        assertEquals("Rolled Back", Artist.find(1).getName());
+        DB.endUnitOfWork();
+
+        assertEquals("AC/DC", Artist.find(1).getName());
+    }
+
+    @Test
+    void testCommittedWorkIsKept() throws Exception {
+        UnitOfWork unitOfWork = DB.beginUnitOfWork();
+        Artist artist = Artist.find(1);
+        artist.setName("Committed");
+        assertTrue(artist.update());
+        unitOfWork.commit();
+        DB.endUnitOfWork();
+
+        assertEquals("Committed", Artist.find(1).getName());
+    }
+
+    @Test
+    void testNoConnectionIsBorrowedUntilNeeded() {
+        UnitOfWork unitOfWork = DB.beginUnitOfWork();
+        assertEquals(0, unitOfWork.getPhysicalConnections());
+    }
+
+    @Test
+    void testReadOnlyUnitReadsThroughTheReadPool() throws Exception {
+        DB.beginUnitOfWork(true);
+        try (Connection conn = DB.connect()) {
+            assertThrows(SQLException.class, () -> conn.createStatement().execute("DELETE FROM playlist_track"));
+        }
+        assertEquals("AC/DC", Artist.find(1).getName());
+    }
+
+    @Test
+    void testWritesInAReadOnlyUnitUseTheWritePool() throws Exception {
+        UnitOfWork unitOfWork = DB.beginUnitOfWork(true);
+        Artist artist = Artist.find(1);
+        artist.setName("Written");
+        assertTrue(artist.update());
+        assertEquals(2, unitOfWork.getPhysicalConnections());
+        unitOfWork.commit();
+        DB.endUnitOfWork();
+
+        assertEquals("Written", Artist.find(1).getName());
+    }
+
+    @Test
+    void testFindsReturnTheSameInstanceWithinAUnitOfWork() {
+        UnitOfWork unitOfWork = DB.beginUnitOfWork();
+        Album album = Album.find(1);
+        assertSame(album, Album.find(1));
+        assertSame(album.getArtist(), Artist.find(album.getArtistId()));
+        assertEquals(2, unitOfWork.getConnections());
+        assertEquals(2, unitOfWork.getIdentityMap().getHits());
+    }
+
+    @Test
+    void testUpdateForgetsTheInstance() {
+        DB.beginUnitOfWork();
+        Artist artist = Artist.find(1);
+        artist.setName("Updated");
+        assertTrue(artist.update());
+        Artist reloaded = Artist.find(1);
+        assertNotSame(artist, reloaded);
+        assertEquals("Updated", reloaded.getName());
+    }
+
+    @Test
+    void testFindsOutsideAUnitOfWorkAreNotShared() {
+        assertNotSame(Artist.find(1), Artist.find(1));
+    }
+}